@@ -0,0 +1,158 @@
+package com.example.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs the partitions of one analytics query side by side, so a query split by room takes about as long as its
+ * slowest room rather than all of them in a row.
+ * <p>
+ * Partitions run on a fixed pool of {@code fishhatchery.analytics.threads} threads behind a queue of
+ * {@code fishhatchery.analytics.queue-capacity} partitions. Each thread holds at most one database connection,
+ * so the pool is kept smaller than the connection pool minus the ingest writers: analytics can never take the
+ * connections that ingestion needs. A query whose partitions are not all done within
+ * {@code fishhatchery.analytics.timeout-ms}, or that finds the queue full, is abandoned as a whole.
+ * <p>
+ * Each partition runs in a transaction that ends at the query's deadline. Its statements get the time left as
+ * their query timeout, so the database stops a partition that was abandoned and its connection goes back to the pool.
+ */
+@Component
+public class AnalyticsExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsExecutor.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${fishhatchery.analytics.threads:4}")
+    private int threads;
+
+    @Value("${fishhatchery.analytics.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${fishhatchery.analytics.timeout-ms:10000}")
+    private long timeoutMillis;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize;
+
+    @Value("${fishhatchery.ingest.async.writer-threads:2}")
+    private int writerThreads;
+
+    private PlatformTransactionManager transactionManager;
+
+    private ThreadPoolExecutor executor;
+
+    private Counter timeouts;
+    private Counter rejected;
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    @PostConstruct
+    void createPool() {
+        // Leaves a connection for every ingest writer and at least one for request threads
+        int poolSize = Math.max(1, Math.min(threads, connectionPoolSize - writerThreads - 1));
+        if (poolSize < threads) {
+            logger.warn("Running analytics on {} threads instead of {} to leave connections for ingestion", poolSize, threads);
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "analytics-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("fishhatchery.analytics.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Analytics partitions waiting for a thread")
+                .register(meterRegistry);
+        timeouts = Counter.builder("fishhatchery.analytics.timeouts")
+                .description("Analytics queries abandoned at their deadline")
+                .register(meterRegistry);
+        rejected = Counter.builder("fishhatchery.analytics.rejected")
+                .description("Analytics queries refused because the queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the partitions of one query and wait for all of them, up to the deadline, even if there is only one.
+     * If one partition fails, times out or cannot be queued, the others are cancelled.
+     *
+     * @param partitions The partitions.
+     * @return The result of each partition, in partition order.
+     * @throws AnalyticsUnavailableException If the partitions did not finish in time or could not be queued.
+     */
+    public <T> List<T> invokeAll(List<Supplier<T>> partitions) {
+        List<T> results = new ArrayList<>(partitions.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<Future<T>> futures = new ArrayList<>(partitions.size());
+        try {
+            for (Supplier<T> partition : partitions) {
+                futures.add(executor.submit(() -> runBefore(deadline, partition)));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new AnalyticsUnavailableException("The analytics queue is full", e);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new AnalyticsUnavailableException("Analytics query did not finish within " + timeoutMillis + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalyticsUnavailableException("Interrupted while waiting for an analytics query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private <T> T runBefore(long deadline, Supplier<T> partition) {
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+            throw new AnalyticsUnavailableException("Analytics query did not start within " + timeoutMillis + " ms", null);
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        // Rounded up, since a timeout of 0 seconds would mean none at all
+        transactionTemplate.setTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remainingNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+        return transactionTemplate.execute(status -> partition.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.analytics;
+
+/**
+ * Thrown when an analytics query cannot be answered in time, because its partitions did not finish before the
+ * deadline or the analytics executor had no room left for them.
+ */
+public class AnalyticsUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AnalyticsUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
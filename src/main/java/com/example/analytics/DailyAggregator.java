@@ -0,0 +1,187 @@
+package com.example.analytics;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.dto.DailyAggregate;
+
+/**
+ * Aggregates the values of one attribute per day over a fixed date range.
+ * <p>
+ * Values are bucketed by their day's offset from the start of the range into primitive arrays,
+ * so adding a value allocates nothing and count, sum, minimum and maximum are all kept in the same pass.
+ * Results are returned in date order, leaving out days without values.
+ */
+public final class DailyAggregator {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    /**
+     * The longest range an aggregator covers, ten years. Ranges come from requests, and every day of the range
+     * takes 32 bytes in every aggregator whether it has values or not.
+     */
+    public static final int MAX_DAYS = 3653;
+
+    /**
+     * The values that can be read per day.
+     */
+    public enum Statistic {
+        MEAN, MIN, MAX, COUNT
+    }
+
+    private final long firstDay;
+    private final double[] sums;
+    private final long[] counts;
+    private final double[] mins;
+    private final double[] maxs;
+
+    /**
+     * @param startDate The first day of the range.
+     * @param endDate   The last day of the range, inclusive.
+     * @throws IllegalArgumentException If the range is longer than {@link #MAX_DAYS}.
+     */
+    public DailyAggregator(LocalDate startDate, LocalDate endDate) {
+        if (!isSupportedRange(startDate, endDate)) {
+            throw new IllegalArgumentException("A daily range covers at most " + MAX_DAYS + " days");
+        }
+        this.firstDay = startDate.toEpochDay();
+        int dayCount = (int) Math.max(0, endDate.toEpochDay() - firstDay + 1);
+        this.sums = new double[dayCount];
+        this.counts = new long[dayCount];
+        this.mins = new double[dayCount];
+        this.maxs = new double[dayCount];
+        Arrays.fill(mins, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * @param startDate The first day of the range.
+     * @param endDate   The last day of the range, inclusive.
+     * @return Whether the range is no longer than {@link #MAX_DAYS}.
+     */
+    public static boolean isSupportedRange(LocalDate startDate, LocalDate endDate) {
+        return endDate.toEpochDay() - startDate.toEpochDay() < MAX_DAYS;
+    }
+
+    /**
+     * Groups daily sums and counts by attribute.
+     *
+     * @param aggregates The daily sums and counts, for any number of attributes.
+     * @param startDate  The first day of the range.
+     * @param endDate    The last day of the range, inclusive.
+     * @return One aggregator per attribute that has values, keyed by attribute ID.
+     */
+    public static Map<Long, DailyAggregator> byAttribute(List<DailyAggregate> aggregates, LocalDate startDate, LocalDate endDate) {
+        Map<Long, DailyAggregator> aggregatorsByAttributeId = new HashMap<>();
+        for (DailyAggregate aggregate : aggregates) {
+            aggregatorsByAttributeId
+                    .computeIfAbsent(aggregate.getAttributeId(), id -> new DailyAggregator(startDate, endDate))
+                    .merge(aggregate.getDay().toEpochDay(), aggregate.getSum(), aggregate.getCount());
+        }
+        return aggregatorsByAttributeId;
+    }
+
+    /**
+     * Adds one value. Values outside the range are ignored.
+     *
+     * @param epochDay The day of the value, as counted by {@link LocalDate#toEpochDay()}.
+     * @param value    The value.
+     */
+    public void add(long epochDay, double value) {
+        long index = epochDay - firstDay;
+        if (index < 0 || index >= counts.length) {
+            return;
+        }
+        int i = (int) index;
+        sums[i] += value;
+        counts[i]++;
+        if (value < mins[i]) {
+            mins[i] = value;
+        }
+        if (value > maxs[i]) {
+            maxs[i] = value;
+        }
+    }
+
+    /**
+     * Adds a run of values whose timestamps are given in seconds since 1970-01-01T00:00 local time.
+     *
+     * @param epochSeconds The timestamps.
+     * @param values       The values, parallel to the timestamps.
+     * @param from         The first index to add.
+     * @param to           The index after the last one to add.
+     */
+    public void addAll(long[] epochSeconds, double[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(Math.floorDiv(epochSeconds[i], SECONDS_PER_DAY), values[i]);
+        }
+    }
+
+    /**
+     * Adds the sum and count of values already aggregated for a day. Minimum and maximum are not known for them.
+     *
+     * @param epochDay The day, as counted by {@link LocalDate#toEpochDay()}.
+     * @param sum      The sum of the values.
+     * @param count    The number of values.
+     */
+    public void merge(long epochDay, double sum, long count) {
+        long index = epochDay - firstDay;
+        if (index < 0 || index >= counts.length || count == 0) {
+            return;
+        }
+        sums[(int) index] += sum;
+        counts[(int) index] += count;
+    }
+
+    /**
+     * Adds everything another aggregator over the same date range holds, for combining tanks into a room or department.
+     *
+     * @param other The other aggregator.
+     */
+    public void merge(DailyAggregator other) {
+        int offset = (int) (other.firstDay - firstDay);
+        for (int i = 0; i < other.counts.length; i++) {
+            int index = i + offset;
+            if (other.counts[i] == 0 || index < 0 || index >= counts.length) {
+                continue;
+            }
+            sums[index] += other.sums[i];
+            counts[index] += other.counts[i];
+            mins[index] = Math.min(mins[index], other.mins[i]);
+            maxs[index] = Math.max(maxs[index], other.maxs[i]);
+        }
+    }
+
+    /**
+     * Reads one statistic for every day that has values.
+     *
+     * @param statistic The statistic to read.
+     * @return The statistic per day, in date order.
+     */
+    public Map<LocalDate, Double> toMap(Statistic statistic) {
+        Map<LocalDate, Double> valuesByDay = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                valuesByDay.put(LocalDate.ofEpochDay(firstDay + i), valueAt(statistic, i));
+            }
+        }
+        return valuesByDay;
+    }
+
+    private double valueAt(Statistic statistic, int i) {
+        switch (statistic) {
+            case MIN:
+                return mins[i] == Double.POSITIVE_INFINITY ? Double.NaN : mins[i];
+            case MAX:
+                return maxs[i] == Double.NEGATIVE_INFINITY ? Double.NaN : maxs[i];
+            case COUNT:
+                return counts[i];
+            default:
+                return sums[i] / counts[i];
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.entity.Attribute;
+import com.example.repository.AttributeRepository;
+
+import jakarta.persistence.EntityNotFoundException;
+
+/**
+ * All attributes, held in memory with indexes by ID and by name.
+ * <p>
+ * The attribute table is small and rarely changes, so it is read once and kept until
+ * {@link #invalidate()} is called after an attribute is created, changed or deleted.
+ * The cached attributes are shared and must not be modified.
+ */
+@Component
+public class AttributeCatalogue {
+
+    @Autowired
+    private AttributeRepository attributeRepository;
+
+    private volatile Snapshot snapshot;
+
+    // Bumped on every invalidation, so a load that raced with one is not kept
+    private long invalidations;
+
+    // The last snapshot kept, still compared against after an invalidation dropped it
+    private Snapshot latest;
+
+    // Generation of the last snapshot loaded with different attributes than the one before
+    private long lastGeneration;
+
+    /**
+     * @return Every attribute, in ID order.
+     */
+    public List<Attribute> getAll() {
+        return snapshot().all();
+    }
+
+    /**
+     * @param id The ID of the attribute.
+     * @return The attribute, or null if there is none with this ID.
+     */
+    public Attribute getById(Long id) {
+        return id == null ? null : snapshot().byId().get(id);
+    }
+
+    /**
+     * @param name The name of the attribute.
+     * @return The attribute, or null if there is none with this name.
+     */
+    public Attribute getByName(String name) {
+        return name == null ? null : snapshot().byName().get(name);
+    }
+
+    /**
+     * Check a set of attribute IDs in one step. An unknown ID makes the attributes be read again once,
+     * in case one was added without going through this application.
+     *
+     * @param ids The IDs to check.
+     * @throws EntityNotFoundException If one of them is null or names no attribute.
+     */
+    public void requireAll(Collection<Long> ids) {
+        for (Long id : ids) {
+            if (id == null) {
+                throw new EntityNotFoundException("Attribute not found with ID: null");
+            }
+        }
+        Long missing = findMissing(ids, snapshot());
+        if (missing != null) {
+            invalidate();
+            missing = findMissing(ids, snapshot());
+        }
+        if (missing != null) {
+            throw new EntityNotFoundException("Attribute not found with ID: " + missing);
+        }
+    }
+
+    /**
+     * Results and ETags built from the attributes are keyed on this, so it only changes when the attributes
+     * read again actually differ. Reloads that find the same attributes, such as the one an unknown ID or an
+     * import triggers, leave it as it is.
+     *
+     * @return A number that changes every time an attribute was added, renamed or removed.
+     */
+    public long getGeneration() {
+        return snapshot().generation();
+    }
+
+    /**
+     * Drops the cached attributes; the next lookup reads them again.
+     */
+    public synchronized void invalidate() {
+        invalidations++;
+        snapshot = null;
+    }
+
+    private static Long findMissing(Collection<Long> ids, Snapshot snapshot) {
+        for (Long id : ids) {
+            if (!snapshot.byId().containsKey(id)) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            long loadedAfter;
+            synchronized (this) {
+                loadedAfter = invalidations;
+            }
+            List<Attribute> all = attributeRepository.findAll();
+            all.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+            Map<Long, Attribute> byId = new HashMap<>();
+            Map<String, Attribute> byName = new HashMap<>();
+            for (Attribute attribute : all) {
+                byId.put(attribute.getId(), attribute);
+                if (attribute.getName() != null) {
+                    byName.putIfAbsent(attribute.getName(), attribute);
+                }
+            }
+            synchronized (this) {
+                long generation = latest != null && latest.all().equals(all) ? latest.generation() : ++lastGeneration;
+                current = new Snapshot(Collections.unmodifiableList(all), byId, byName, generation);
+                if (invalidations == loadedAfter) {
+                    snapshot = current;
+                    latest = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private record Snapshot(List<Attribute> all, Map<Long, Attribute> byId, Map<String, Attribute> byName, long generation) {
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.cache;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.dto.RoomNode;
+import com.example.dto.TankNode;
+import com.example.event.ReadingsChangedEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Keeps the results of recent daily-average queries, so the same scope, attribute and date range asked for
+ * by many users is computed once.
+ * <p>
+ * At most {@code fishhatchery.result-cache.max-entries} results and {@code fishhatchery.result-cache.max-weight}
+ * daily values are kept, the least recently used going first. A committed write to a tank on some days drops
+ * only the results of that tank, its room and its department whose range includes one of those days.
+ * Results computed against an older hierarchy or attribute catalogue are not served.
+ */
+@Component
+public class DailyAverageCache {
+
+    /**
+     * The kind of scope a result was computed over.
+     */
+    public enum Scope {
+        TANK, ROOM, DEPARTMENT
+    }
+
+    /**
+     * What a result computed from data read after this point depends on: it is only kept if no write to its scope
+     * was committed since, and only served while the hierarchy and attributes are still at these versions.
+     */
+    public record Mark(long sequence, long hierarchyVersion, long attributeGeneration) {
+    }
+
+    @Autowired
+    private HierarchyStore hierarchyStore;
+
+    @Autowired
+    private AttributeCatalogue attributeCatalogue;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${fishhatchery.result-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fishhatchery.result-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${fishhatchery.result-cache.max-weight:500000}")
+    private long maxWeight;
+
+    // In access order, least recently used first
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<ScopeRef, Set<Key>> keysByScope = new HashMap<>();
+
+    // Sequence number of the last invalidation per scope, so results computed across one are not kept
+    private final Map<ScopeRef, Long> lastInvalidationByScope = new HashMap<>();
+
+    private long invalidationSequence;
+
+    // Sequence number of the last clear, which invalidates every scope
+    private long clearedAt;
+
+    private long totalWeight;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+    private Counter invalidations;
+
+    @PostConstruct
+    void registerMeters() {
+        hits = Counter.builder("fishhatchery.result-cache.hits")
+                .description("Daily-average queries answered from the cache")
+                .register(meterRegistry);
+        misses = Counter.builder("fishhatchery.result-cache.misses")
+                .description("Daily-average queries that had to be computed")
+                .register(meterRegistry);
+        evictions = Counter.builder("fishhatchery.result-cache.evictions")
+                .description("Results dropped to stay within the size and weight limits")
+                .register(meterRegistry);
+        invalidations = Counter.builder("fishhatchery.result-cache.invalidations")
+                .description("Results dropped because a write changed them")
+                .register(meterRegistry);
+        Gauge.builder("fishhatchery.result-cache.size", this, DailyAverageCache::getSize)
+                .description("Results held")
+                .register(meterRegistry);
+        Gauge.builder("fishhatchery.result-cache.weight", this, DailyAverageCache::getWeight)
+                .description("Daily values held")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The daily averages of one attribute over a scope, from the cache or from the loader.
+     *
+     * @param scope       The kind of scope.
+     * @param scopeId     The ID of the tank, room or department.
+     * @param attributeId The ID of the attribute.
+     * @param startDate   The first day of the range.
+     * @param endDate     The last day of the range, inclusive.
+     * @param loader      Computes the averages on a miss.
+     * @return The daily averages, which must not be modified.
+     */
+    public Map<LocalDate, Double> getDailyAverages(Scope scope, Long scopeId, Long attributeId, LocalDate startDate, LocalDate endDate,
+            Supplier<Map<LocalDate, Double>> loader) {
+        return getDailyAverages(scope, scopeId, attributeId, startDate, endDate, mark(), loader);
+    }
+
+    /**
+     * The daily averages of one attribute over a scope, from the cache or from a loader that works on data read
+     * before this call, such as data shared by several results.
+     *
+     * @param scope       The kind of scope.
+     * @param scopeId     The ID of the tank, room or department.
+     * @param attributeId The ID of the attribute.
+     * @param startDate   The first day of the range.
+     * @param endDate     The last day of the range, inclusive.
+     * @param mark        Taken with {@link #mark()} before the loader's data was first read.
+     * @param loader      Computes the averages on a miss.
+     * @return The daily averages, which must not be modified.
+     */
+    public Map<LocalDate, Double> getDailyAverages(Scope scope, Long scopeId, Long attributeId, LocalDate startDate, LocalDate endDate,
+            Mark mark, Supplier<Map<LocalDate, Double>> loader) {
+        return get(new Key(scope, scopeId, attributeId, startDate, endDate), mark, () -> {
+            Map<LocalDate, Double> averages = loader.get();
+            return new Entry(Collections.unmodifiableMap(averages), averages.size() + 1);
+        });
+    }
+
+    /**
+     * The daily averages of every attribute over a scope, from the cache or from the loader.
+     *
+     * @param scope     The kind of scope.
+     * @param scopeId   The ID of the tank, room or department.
+     * @param startDate The first day of the range.
+     * @param endDate   The last day of the range, inclusive.
+     * @param loader    Computes the averages on a miss.
+     * @return The daily averages by attribute name, which must not be modified.
+     */
+    public Map<String, Map<LocalDate, Double>> getDailyAveragesByAttribute(Scope scope, Long scopeId, LocalDate startDate, LocalDate endDate,
+            Supplier<Map<String, Map<LocalDate, Double>>> loader) {
+        return get(new Key(scope, scopeId, null, startDate, endDate), mark(), () -> {
+            Map<String, Map<LocalDate, Double>> averagesByAttribute = new LinkedHashMap<>();
+            long weight = 1;
+            for (Map.Entry<String, Map<LocalDate, Double>> attribute : loader.get().entrySet()) {
+                averagesByAttribute.put(attribute.getKey(), Collections.unmodifiableMap(attribute.getValue()));
+                weight += attribute.getValue().size() + 1;
+            }
+            return new Entry(Collections.unmodifiableMap(averagesByAttribute), weight);
+        });
+    }
+
+    /**
+     * @return The current state, to compare results computed from data read after now against.
+     */
+    public Mark mark() {
+        long hierarchyVersion = hierarchyStore.get().getVersion();
+        long attributeGeneration = attributeCatalogue.getGeneration();
+        synchronized (this) {
+            return new Mark(invalidationSequence, hierarchyVersion, attributeGeneration);
+        }
+    }
+
+    /**
+     * Drops every result, for changes that are not announced per tank.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        keysByScope.clear();
+        totalWeight = 0;
+        clearedAt = ++invalidationSequence;
+    }
+
+    /**
+     * Drops the results of the tank, its room and its department that cover a day whose attribute values changed.
+     * Runs after the hot window reloaded the days and before the tank's new version is handed out.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(1)
+    public void onReadingsChanged(ReadingsChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        HierarchySnapshot hierarchy = hierarchyStore.get();
+        List<ScopeRef> scopes = new ArrayList<>(3);
+        scopes.add(new ScopeRef(Scope.TANK, event.tankId()));
+        TankNode tank = hierarchy.getTank(event.tankId());
+        if (tank != null && tank.roomId() != null) {
+            scopes.add(new ScopeRef(Scope.ROOM, tank.roomId()));
+            RoomNode room = hierarchy.getRoom(tank.roomId());
+            if (room != null && room.departmentId() != null) {
+                scopes.add(new ScopeRef(Scope.DEPARTMENT, room.departmentId()));
+            }
+        }
+
+        synchronized (this) {
+            invalidationSequence++;
+            for (ScopeRef scope : scopes) {
+                lastInvalidationByScope.put(scope, invalidationSequence);
+                Set<Key> keys = keysByScope.get(scope);
+                if (keys == null) {
+                    continue;
+                }
+                for (Key key : new ArrayList<>(keys)) {
+                    if (key.coversAny(event.days())) {
+                        remove(key);
+                        invalidations.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of results held.
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of daily values held.
+     */
+    public synchronized long getWeight() {
+        return totalWeight;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Key key, Mark mark, Supplier<Entry> loader) {
+        if (!enabled) {
+            return (T) loader.get().value();
+        }
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.hierarchyVersion() == mark.hierarchyVersion() && entry.attributeGeneration() == mark.attributeGeneration()) {
+                hits.increment();
+                return (T) entry.value();
+            }
+            // Versions only move forward; an entry newer than an old mark is left for current callers
+            if (entry != null && (entry.hierarchyVersion() < mark.hierarchyVersion() || entry.attributeGeneration() < mark.attributeGeneration())) {
+                remove(key);
+            }
+        }
+        misses.increment();
+
+        // Computed outside the lock; only kept if no write to the scope was committed since the mark
+        Entry computed = loader.get();
+        Entry entry = new Entry(computed.value(), computed.weight(), mark.hierarchyVersion(), mark.attributeGeneration());
+        synchronized (this) {
+            Long lastInvalidation = lastInvalidationByScope.get(key.scope());
+            boolean invalidatedMeanwhile = clearedAt > mark.sequence() || (lastInvalidation != null && lastInvalidation > mark.sequence());
+            if (!invalidatedMeanwhile && entry.weight() <= maxWeight) {
+                put(key, entry);
+            }
+        }
+        return (T) entry.value();
+    }
+
+    private void put(Key key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            totalWeight -= previous.weight();
+        }
+        totalWeight += entry.weight();
+        keysByScope.computeIfAbsent(key.scope(), scope -> new HashSet<>()).add(key);
+
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalWeight > maxWeight) && eldest.hasNext()) {
+            Map.Entry<Key, Entry> evicted = eldest.next();
+            eldest.remove();
+            totalWeight -= evicted.getValue().weight();
+            forgetKey(evicted.getKey());
+            evictions.increment();
+        }
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalWeight -= removed.weight();
+            forgetKey(key);
+        }
+    }
+
+    private void forgetKey(Key key) {
+        Set<Key> keys = keysByScope.get(key.scope());
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByScope.remove(key.scope());
+            }
+        }
+    }
+
+    private record ScopeRef(Scope scope, Long id) {
+    }
+
+    // A null attribute ID stands for every attribute
+    private record Key(Scope type, Long scopeId, Long attributeId, LocalDate startDate, LocalDate endDate) {
+
+        ScopeRef scope() {
+            return new ScopeRef(type, scopeId);
+        }
+
+        boolean coversAny(Set<LocalDate> days) {
+            for (LocalDate day : days) {
+                if (!day.isBefore(startDate) && !day.isAfter(endDate)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record Entry(Object value, long weight, long hierarchyVersion, long attributeGeneration) {
+
+        Entry(Object value, long weight) {
+            this(value, weight, 0, 0);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.dto.DepartmentNode;
+import com.example.dto.RoomNode;
+import com.example.dto.TankNode;
+import com.example.event.ReadingsChangedEvent;
+
+/**
+ * Versions of the data behind the hierarchy and analytics responses, used as ETags so clients polling
+ * for unchanged data get a 304 without anything being computed.
+ * <p>
+ * Every tank has a write watermark that moves forward each time a write to its attribute values is committed;
+ * a room or department is at the highest watermark of its tanks. Versions also carry the hierarchy snapshot
+ * version, the attribute catalogue generation and the start time of this instance, since watermarks are only
+ * kept in memory. A version is read before the data it describes, so a response is never tagged newer than it is.
+ */
+@Component
+public class DataVersions {
+
+    @Autowired
+    private HierarchyStore hierarchyStore;
+
+    @Autowired
+    private AttributeCatalogue attributeCatalogue;
+
+    private final String bootEpoch = Long.toString(System.currentTimeMillis(), 36);
+
+    // Write watermark by tank ID, all drawn from one sequence
+    private final Map<Long, Long> watermarksByTankId = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Moved forward when every analytics response may have changed, such as after a rollup rebuild
+    private final AtomicLong analyticsGeneration = new AtomicLong();
+
+    /**
+     * @return The version of the department, room and tank hierarchy.
+     */
+    public String getHierarchyVersion() {
+        return "h-" + bootEpoch + "-" + hierarchyStore.get().getVersion();
+    }
+
+    /**
+     * @param tankId The ID of the tank.
+     * @return The version of the analytics of the tank.
+     */
+    public String getTankVersion(Long tankId) {
+        return analyticsVersion("t", tankId, watermarksByTankId.getOrDefault(tankId, 0L));
+    }
+
+    /**
+     * @param roomId The ID of the room.
+     * @return The version of the analytics of the room and its tanks.
+     */
+    public String getRoomVersion(Long roomId) {
+        long watermark = 0;
+        RoomNode room = hierarchyStore.get().getRoom(roomId);
+        if (room != null) {
+            watermark = highestWatermark(room);
+        }
+        return analyticsVersion("r", roomId, watermark);
+    }
+
+    /**
+     * @param departmentId The ID of the department.
+     * @return The version of the analytics of the department, its rooms and their tanks.
+     */
+    public String getDepartmentVersion(Long departmentId) {
+        long watermark = 0;
+        DepartmentNode department = hierarchyStore.get().getDepartment(departmentId);
+        if (department != null) {
+            for (RoomNode room : department.rooms()) {
+                watermark = Math.max(watermark, highestWatermark(room));
+            }
+        }
+        return analyticsVersion("d", departmentId, watermark);
+    }
+
+    /**
+     * Moves every analytics version forward, for changes that are not announced per tank.
+     */
+    public void advanceAll() {
+        analyticsGeneration.incrementAndGet();
+    }
+
+    /**
+     * Moves the watermark of a tank forward once its attribute values changed. Runs after the other listeners,
+     * so the in-memory data is current before the new version can be handed out.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onReadingsChanged(ReadingsChangedEvent event) {
+        watermarksByTankId.put(event.tankId(), sequence.incrementAndGet());
+    }
+
+    private long highestWatermark(RoomNode room) {
+        long watermark = 0;
+        for (TankNode tank : room.tanks()) {
+            watermark = Math.max(watermark, watermarksByTankId.getOrDefault(tank.id(), 0L));
+        }
+        return watermark;
+    }
+
+    private String analyticsVersion(String scope, Long id, long watermark) {
+        return scope + id + "-" + bootEpoch
+                + "-" + hierarchyStore.get().getVersion()
+                + "-" + attributeCatalogue.getGeneration()
+                + "-" + analyticsGeneration.get()
+                + "-" + watermark;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import com.example.dto.DepartmentNode;
+import com.example.dto.HierarchyEntry;
+import com.example.dto.NamedId;
+import com.example.dto.RoomNode;
+import com.example.dto.TankNode;
+
+/**
+ * An immutable copy of the department, room and tank hierarchy, without attribute values.
+ * <p>
+ * Every rebuild produces a new snapshot with a higher version; a snapshot never changes once built,
+ * so it can be read by any number of threads without locking.
+ */
+public final class HierarchySnapshot {
+
+    private final long version;
+    private final List<DepartmentNode> departments;
+    private final List<RoomNode> rooms;
+    private final List<TankNode> tanks;
+    private final Map<Long, DepartmentNode> departmentsById;
+    private final Map<Long, RoomNode> roomsById;
+    private final Map<Long, TankNode> tanksById;
+
+    private HierarchySnapshot(long version, List<DepartmentNode> departments, List<RoomNode> rooms, List<TankNode> tanks) {
+        this.version = version;
+        this.departments = Collections.unmodifiableList(departments);
+        this.rooms = Collections.unmodifiableList(rooms);
+        this.tanks = Collections.unmodifiableList(tanks);
+        this.departmentsById = new HashMap<>();
+        for (DepartmentNode department : departments) {
+            departmentsById.put(department.id(), department);
+        }
+        this.roomsById = new HashMap<>();
+        for (RoomNode room : rooms) {
+            roomsById.put(room.id(), room);
+        }
+        this.tanksById = new HashMap<>();
+        for (TankNode tank : tanks) {
+            tanksById.put(tank.id(), tank);
+        }
+    }
+
+    /**
+     * Build a snapshot from flat lists, each in ascending ID order.
+     *
+     * @param version     The version of the new snapshot.
+     * @param departments The ID and name of every department.
+     * @param rooms       Every room, with its department ID as parent.
+     * @param tanks       Every tank, with its room ID as parent.
+     * @return The snapshot; children keep the order of the lists.
+     */
+    static HierarchySnapshot build(long version, List<NamedId> departments, List<HierarchyEntry> rooms, List<HierarchyEntry> tanks) {
+        Map<Long, List<TankNode>> tanksByRoomId = new HashMap<>();
+        List<TankNode> tankNodes = new ArrayList<>(tanks.size());
+        for (HierarchyEntry tank : tanks) {
+            TankNode node = new TankNode(tank.id(), tank.name(), tank.parentId());
+            tankNodes.add(node);
+            if (tank.parentId() != null) {
+                tanksByRoomId.computeIfAbsent(tank.parentId(), id -> new ArrayList<>()).add(node);
+            }
+        }
+
+        Map<Long, List<RoomNode>> roomsByDepartmentId = new HashMap<>();
+        List<RoomNode> roomNodes = new ArrayList<>(rooms.size());
+        for (HierarchyEntry room : rooms) {
+            List<TankNode> roomTanks = tanksByRoomId.getOrDefault(room.id(), List.of());
+            RoomNode node = new RoomNode(room.id(), room.name(), room.parentId(), Collections.unmodifiableList(roomTanks));
+            roomNodes.add(node);
+            if (room.parentId() != null) {
+                roomsByDepartmentId.computeIfAbsent(room.parentId(), id -> new ArrayList<>()).add(node);
+            }
+        }
+
+        List<DepartmentNode> departmentNodes = new ArrayList<>(departments.size());
+        for (NamedId department : departments) {
+            List<RoomNode> departmentRooms = roomsByDepartmentId.getOrDefault(department.id(), List.of());
+            departmentNodes.add(new DepartmentNode(department.id(), department.name(), Collections.unmodifiableList(departmentRooms)));
+        }
+        return new HierarchySnapshot(version, departmentNodes, roomNodes, tankNodes);
+    }
+
+    /**
+     * @return The version of this snapshot, higher for every rebuild.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Every department with its rooms and tanks, in ID order.
+     */
+    public List<DepartmentNode> getDepartments() {
+        return departments;
+    }
+
+    /**
+     * @param afterId The ID after which to start, or null to start with the first department.
+     * @param limit   The largest number of departments to return.
+     * @return The departments with a higher ID, in ID order.
+     */
+    public List<DepartmentNode> getDepartmentsAfter(Long afterId, int limit) {
+        return after(departments, DepartmentNode::id, afterId, limit);
+    }
+
+    /**
+     * @param id The ID of the department.
+     * @return The department, or null if there is none with this ID.
+     */
+    public DepartmentNode getDepartment(Long id) {
+        return departmentsById.get(id);
+    }
+
+    /**
+     * @return Every room with its tanks, in ID order.
+     */
+    public List<RoomNode> getRooms() {
+        return rooms;
+    }
+
+    /**
+     * @param afterId The ID after which to start, or null to start with the first room.
+     * @param limit   The largest number of rooms to return.
+     * @return The rooms with a higher ID, in ID order.
+     */
+    public List<RoomNode> getRoomsAfter(Long afterId, int limit) {
+        return after(rooms, RoomNode::id, afterId, limit);
+    }
+
+    /**
+     * @param id The ID of the room.
+     * @return The room, or null if there is none with this ID.
+     */
+    public RoomNode getRoom(Long id) {
+        return roomsById.get(id);
+    }
+
+    /**
+     * @return Every tank, in ID order.
+     */
+    public List<TankNode> getTanks() {
+        return tanks;
+    }
+
+    /**
+     * @param afterId The ID after which to start, or null to start with the first tank.
+     * @param limit   The largest number of tanks to return.
+     * @return The tanks with a higher ID, in ID order.
+     */
+    public List<TankNode> getTanksAfter(Long afterId, int limit) {
+        return after(tanks, TankNode::id, afterId, limit);
+    }
+
+    /**
+     * @param id The ID of the tank.
+     * @return The tank, or null if there is none with this ID.
+     */
+    public TankNode getTank(Long id) {
+        return tanksById.get(id);
+    }
+
+    // Binary search in a list in ID order, so a page costs the same wherever it starts
+    private static <T> List<T> after(List<T> nodes, ToLongFunction<T> idOf, Long afterId, int limit) {
+        int low = 0;
+        int high = nodes.size();
+        while (afterId != null && low < high) {
+            int mid = (low + high) >>> 1;
+            if (idOf.applyAsLong(nodes.get(mid)) <= afterId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return nodes.subList(low, Math.min(nodes.size(), low + limit));
+    }
+}
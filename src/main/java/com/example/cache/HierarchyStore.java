@@ -0,0 +1,93 @@
+package com.example.cache;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.event.HierarchyChangedEvent;
+import com.example.repository.DepartmentRepository;
+import com.example.repository.RoomRepository;
+import com.example.repository.TankRepository;
+
+/**
+ * Holds the current {@link HierarchySnapshot}, so hierarchy reads never touch the database.
+ * <p>
+ * The snapshot is built on first use and rebuilt from three projection queries whenever a
+ * {@link HierarchyChangedEvent} was committed. The new snapshot is built off to the side and swapped in
+ * whole, so readers never wait and always see one consistent version.
+ */
+@Component
+public class HierarchyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(HierarchyStore.class);
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private TankRepository tankRepository;
+
+    // A new transaction also works from after-commit listeners
+    private TransactionTemplate readOnlyTransaction;
+
+    private final AtomicReference<HierarchySnapshot> current = new AtomicReference<>();
+
+    // Version of the last snapshot built, kept across failed rebuilds so versions never repeat
+    private long lastVersion;
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * @return The current snapshot, built first if there is none yet.
+     */
+    public HierarchySnapshot get() {
+        HierarchySnapshot snapshot = current.get();
+        return snapshot != null ? snapshot : buildIfMissing();
+    }
+
+    /**
+     * Rebuilds the snapshot once a change to the hierarchy is committed. If the rebuild fails, the snapshot
+     * is dropped so the next read builds it again rather than serving a stale one.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHierarchyChanged(HierarchyChangedEvent event) {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            current.set(null);
+            logger.error("Could not rebuild the hierarchy snapshot", e);
+        }
+    }
+
+    private synchronized HierarchySnapshot buildIfMissing() {
+        HierarchySnapshot snapshot = current.get();
+        return snapshot != null ? snapshot : rebuild();
+    }
+
+    // Serialized, so an older build can never replace a newer one
+    private synchronized HierarchySnapshot rebuild() {
+        HierarchySnapshot snapshot = readOnlyTransaction.execute(status -> HierarchySnapshot.build(
+                lastVersion + 1,
+                departmentRepository.findAllNamedIds(),
+                roomRepository.findAllHierarchyEntries(),
+                tankRepository.findAllHierarchyEntries()));
+        lastVersion = snapshot.getVersion();
+        current.set(snapshot);
+        return snapshot;
+    }
+}
@@ -0,0 +1,451 @@
+package com.example.cache;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.analytics.DailyAggregator;
+import com.example.dto.TankReading;
+import com.example.event.ReadingsChangedEvent;
+import com.example.repository.AttributeValueRepository;
+
+/**
+ * Keeps the readings of the last days in memory, per tank and attribute, as sorted primitive arrays,
+ * so daily statistics over recent ranges are computed without touching the database.
+ * <p>
+ * The store is filled in the background on startup, newest day first, and kept current by reloading
+ * the tank days announced by {@link ReadingsChangedEvent} once their transaction committed. A reloaded day is read
+ * off to the side and swapped in per attribute, and reloads of one tank run one at a time, so readers never see
+ * a day empty or doubled and an older read never replaces a newer one.
+ * It holds at most {@code fishhatchery.hot-window.max-readings} readings (about 16 bytes each);
+ * when that is exceeded its oldest days are dropped and it covers a shorter window.
+ */
+@Component
+public class HotWindowStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotWindowStore.class);
+
+    @Autowired
+    private AttributeValueRepository attributeValueRepository;
+
+    // Streams need an open transaction; a new one also works from after-commit listeners
+    private TransactionTemplate readOnlyTransaction;
+
+    @Value("${fishhatchery.hot-window.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fishhatchery.hot-window.days:30}")
+    private int days;
+
+    @Value("${fishhatchery.hot-window.max-readings:10000000}")
+    private long maxReadings;
+
+    // Series by tank ID, then attribute ID
+    private final Map<Long, Map<Long, Series>> seriesByTankId = new ConcurrentHashMap<>();
+
+    private final AtomicLong readingCount = new AtomicLong();
+
+    // First day held in memory, null until the initial load finished
+    private volatile LocalDate coverageStart;
+
+    // Tank days written while the initial load was running, reloaded once it is done
+    private final Set<TankDay> pendingTankDays = ConcurrentHashMap.newKeySet();
+
+    // Reloads of one tank hold its stripe from reading the day to swapping it in
+    private final Object[] reloadLocks = new Object[64];
+
+    {
+        for (int i = 0; i < reloadLocks.length; i++) {
+            reloadLocks[i] = new Object();
+        }
+    }
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Whether every reading from the given day on is held in memory.
+     *
+     * @param startDate The first day of a requested range.
+     * @return True if the range can be served from memory.
+     */
+    public boolean covers(LocalDate startDate) {
+        LocalDate start = coverageStart;
+        return start != null && !startDate.isBefore(start);
+    }
+
+    /**
+     * Daily statistics over a set of tanks, per attribute, from memory.
+     * Only valid when {@link #covers(LocalDate)} holds for the start date.
+     *
+     * @param tankIds     The tanks to aggregate over.
+     * @param attributeId The attribute to aggregate, or null for every attribute.
+     * @param startDate   The first day of the range.
+     * @param endDate     The last day of the range, inclusive.
+     * @return One aggregator per attribute that has values in any of the tanks, keyed by attribute ID.
+     */
+    public Map<Long, DailyAggregator> aggregateDaily(Collection<Long> tankIds, Long attributeId, LocalDate startDate, LocalDate endDate) {
+        long from = toSeconds(startDate.atStartOfDay());
+        long to = toSeconds(endDate.plusDays(1).atStartOfDay());
+
+        // Every tank adds into the same aggregator per attribute
+        Map<Long, DailyAggregator> aggregatorsByAttributeId = new HashMap<>();
+        for (Long tankId : tankIds) {
+            Map<Long, Series> seriesByAttributeId = seriesByTankId.get(tankId);
+            if (seriesByAttributeId == null) {
+                continue;
+            }
+            for (Map.Entry<Long, Series> entry : seriesByAttributeId.entrySet()) {
+                if (attributeId != null && !attributeId.equals(entry.getKey())) {
+                    continue;
+                }
+                DailyAggregator aggregator = aggregatorsByAttributeId.computeIfAbsent(entry.getKey(), id -> new DailyAggregator(startDate, endDate));
+                entry.getValue().addTo(aggregator, from, to);
+            }
+        }
+        return aggregatorsByAttributeId;
+    }
+
+    /**
+     * Fills the store in the background, newest day first, until the window or the reading limit is reached.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread loader = new Thread(this::load, "hot-window-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Reloads the tank days whose attribute values changed, once the change is committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0) // Before DataVersions hands out the tank's new version
+    public void onReadingsChanged(ReadingsChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (coverageStart == null) {
+            // Under the monitor load() sets coverageStart with, so a day is either queued before the drain or reloaded
+            synchronized (this) {
+                if (coverageStart == null) {
+                    for (LocalDate day : event.days()) {
+                        pendingTankDays.add(new TankDay(event.tankId(), day));
+                    }
+                    return;
+                }
+            }
+        }
+        for (LocalDate day : event.days()) {
+            reloadTankDay(event.tankId(), day);
+        }
+        enforceLimit();
+    }
+
+    /**
+     * Slides the window forward once a day, dropping the day that left it.
+     */
+    @Scheduled(cron = "${fishhatchery.hot-window.slide-cron:0 5 0 * * *}")
+    public synchronized void slideWindow() {
+        LocalDate windowStart = LocalDate.now().minusDays(days - 1);
+        if (coverageStart != null && coverageStart.isBefore(windowStart)) {
+            dropBefore(windowStart);
+        }
+    }
+
+    /**
+     * Drops the readings of a deleted tank once they were purged from the database.
+     *
+     * @param tankId The ID of the tank.
+     */
+    public void forgetTank(Long tankId) {
+        Map<Long, Series> seriesByAttributeId = seriesByTankId.remove(tankId);
+        if (seriesByAttributeId != null) {
+            for (Series series : seriesByAttributeId.values()) {
+                readingCount.addAndGet(-series.size());
+            }
+        }
+    }
+
+    private void load() {
+        LocalDate today = LocalDate.now();
+        LocalDate loadedFrom = today.plusDays(1);
+        long started = System.currentTimeMillis();
+
+        // Readings dated in the future belong to the window too
+        LocalDateTime tomorrow = today.plusDays(1).atStartOfDay();
+        streamInto(repository -> repository.streamReadingsBetween(tomorrow, LocalDateTime.of(9999, 12, 31, 0, 0)));
+
+        for (LocalDate day = today; day.isAfter(today.minusDays(days)); day = day.minusDays(1)) {
+            LocalDateTime from = day.atStartOfDay();
+            LocalDateTime to = day.plusDays(1).atStartOfDay();
+            streamInto(repository -> repository.streamReadingsBetween(from, to));
+            if (readingCount.get() > maxReadings) {
+                removeBetween(null, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+                logger.warn("Hot window limited to {} days by fishhatchery.hot-window.max-readings", today.toEpochDay() - loadedFrom.toEpochDay() + 1);
+                break;
+            }
+            loadedFrom = day;
+        }
+
+        // Tank days queued from here on are drained below; later events see coverageStart and reload themselves
+        synchronized (this) {
+            coverageStart = loadedFrom;
+        }
+        for (TankDay tankDay : pendingTankDays) {
+            pendingTankDays.remove(tankDay);
+            reloadTankDay(tankDay.tankId(), tankDay.day());
+        }
+        enforceLimit();
+
+        logger.info("Hot window loaded {} readings from {} in {} ms", readingCount.get(), loadedFrom, System.currentTimeMillis() - started);
+    }
+
+    private void reloadTankDay(Long tankId, LocalDate day) {
+        LocalDate start = coverageStart;
+        if (start == null || day.isBefore(start)) {
+            return;
+        }
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = day.plusDays(1).atStartOfDay();
+
+        synchronized (reloadLocks[Math.floorMod(tankId.hashCode(), reloadLocks.length)]) {
+            Map<Long, Series> dayByAttributeId = new HashMap<>();
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<TankReading> readings = attributeValueRepository.streamReadingsInTankBetween(tankId, from, to)) {
+                    readings.forEach(reading -> {
+                        if (reading.attributeId() != null) {
+                            dayByAttributeId.computeIfAbsent(reading.attributeId(), id -> new Series())
+                                    .add(toSeconds(reading.timestamp()), reading.value());
+                        }
+                    });
+                }
+            });
+
+            Map<Long, Series> seriesByAttributeId = dayByAttributeId.isEmpty()
+                    ? seriesByTankId.get(tankId)
+                    : seriesByTankId.computeIfAbsent(tankId, id -> new ConcurrentHashMap<>());
+            if (seriesByAttributeId == null) {
+                return;
+            }
+            // Attributes that no longer have readings on the day lose them
+            for (Map.Entry<Long, Series> entry : seriesByAttributeId.entrySet()) {
+                if (!dayByAttributeId.containsKey(entry.getKey())) {
+                    readingCount.addAndGet(entry.getValue().replaceBetween(toSeconds(from), toSeconds(to), new Series()));
+                }
+            }
+            for (Map.Entry<Long, Series> entry : dayByAttributeId.entrySet()) {
+                Series series = seriesByAttributeId.computeIfAbsent(entry.getKey(), id -> new Series());
+                readingCount.addAndGet(series.replaceBetween(toSeconds(from), toSeconds(to), entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Adds the readings of a streaming query as they are fetched, in a read-only transaction of its own.
+     */
+    private void streamInto(Function<AttributeValueRepository, Stream<TankReading>> query) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<TankReading> readings = query.apply(attributeValueRepository)) {
+                readings.forEach(this::add);
+            }
+        });
+    }
+
+    /**
+     * Gives up whole days, oldest first, until the store is back under its reading limit.
+     */
+    private synchronized void enforceLimit() {
+        while (readingCount.get() > maxReadings && coverageStart != null && coverageStart.isBefore(LocalDate.now())) {
+            dropBefore(coverageStart.plusDays(1));
+            logger.warn("Hot window shrunk to start at {} to stay under {} readings", coverageStart, maxReadings);
+        }
+    }
+
+    private void dropBefore(LocalDate day) {
+        coverageStart = day;
+        long before = toSeconds(day.atStartOfDay());
+        for (Map<Long, Series> seriesByAttributeId : seriesByTankId.values()) {
+            for (Series series : seriesByAttributeId.values()) {
+                readingCount.addAndGet(-series.removeBefore(before));
+            }
+        }
+    }
+
+    private void add(TankReading reading) {
+        if (reading.tankId() == null || reading.attributeId() == null) {
+            return;
+        }
+        seriesByTankId.computeIfAbsent(reading.tankId(), id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(reading.attributeId(), id -> new Series())
+                .add(toSeconds(reading.timestamp()), reading.value());
+        readingCount.incrementAndGet();
+    }
+
+    private void removeBetween(Long tankId, LocalDateTime from, LocalDateTime to) {
+        Collection<Map<Long, Series>> tanks = tankId == null
+                ? seriesByTankId.values()
+                : seriesByTankId.containsKey(tankId) ? List.of(seriesByTankId.get(tankId)) : List.of();
+        for (Map<Long, Series> seriesByAttributeId : tanks) {
+            for (Series series : seriesByAttributeId.values()) {
+                readingCount.addAndGet(-series.removeBetween(toSeconds(from), toSeconds(to)));
+            }
+        }
+    }
+
+    // Local date-time as seconds since 1970-01-01T00:00, so that dividing by a day gives the epoch day
+    private static long toSeconds(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private record TankDay(Long tankId, LocalDate day) {
+    }
+
+    /**
+     * Readings of one attribute in one tank, sorted by timestamp, in parallel primitive arrays.
+     */
+    static final class Series {
+        private long[] timestamps = new long[16];
+        private double[] values = new double[16];
+        private int size;
+
+        synchronized void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            // Readings mostly arrive in order, so this is usually an append
+            int index = upperBound(timestamp);
+            System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            timestamps[index] = timestamp;
+            values[index] = value;
+            size++;
+        }
+
+        /**
+         * Removes the readings from {@code from} inclusive to {@code to} exclusive.
+         *
+         * @return The number of readings removed.
+         */
+        synchronized int removeBetween(long from, long to) {
+            int start = lowerBound(from);
+            int end = lowerBound(to);
+            int removed = end - start;
+            if (removed > 0) {
+                System.arraycopy(timestamps, end, timestamps, start, size - end);
+                System.arraycopy(values, end, values, start, size - end);
+                size -= removed;
+                shrink();
+            }
+            return removed;
+        }
+
+        /**
+         * Replaces the readings from {@code from} inclusive to {@code to} exclusive with those of another series,
+         * in one step.
+         *
+         * @param replacement Readings within the range, not shared with other threads.
+         * @return The change in the number of readings.
+         */
+        synchronized int replaceBetween(long from, long to, Series replacement) {
+            int start = lowerBound(from);
+            int end = lowerBound(to);
+            int added = replacement.size;
+            int newSize = size - (end - start) + added;
+            if (newSize > timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, Math.max(newSize, timestamps.length * 2));
+                values = Arrays.copyOf(values, timestamps.length);
+            }
+            System.arraycopy(timestamps, end, timestamps, start + added, size - end);
+            System.arraycopy(values, end, values, start + added, size - end);
+            System.arraycopy(replacement.timestamps, 0, timestamps, start, added);
+            System.arraycopy(replacement.values, 0, values, start, added);
+            int change = newSize - size;
+            size = newSize;
+            shrink();
+            return change;
+        }
+
+        synchronized int removeBefore(long to) {
+            return removeBetween(Long.MIN_VALUE, to);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Adds the readings from {@code from} inclusive to {@code to} exclusive to a daily aggregator.
+         */
+        synchronized void addTo(DailyAggregator aggregator, long from, long to) {
+            aggregator.addAll(timestamps, values, lowerBound(from), lowerBound(to));
+        }
+
+        private int lowerBound(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int upperBound(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] <= timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private void shrink() {
+            if (timestamps.length > 64 && size < timestamps.length / 4) {
+                timestamps = Arrays.copyOf(timestamps, timestamps.length / 2);
+                values = Arrays.copyOf(values, values.length / 2);
+            }
+        }
+    }
+}
@@ -1,34 +1,56 @@
 package com.example.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.example.analytics.AnalyticsUnavailableException;
+import com.example.analytics.DailyAggregator;
+import com.example.cache.AttributeCatalogue;
+import com.example.cache.DataVersions;
+import com.example.dto.DailyAverageBatchRequest;
+import com.example.dto.ImportProgress;
+import com.example.dto.ReadingRequest;
+import com.example.dto.ScopeDailyAverages;
 import com.example.entity.Attribute;
 import com.example.entity.AttributeValue;
 import com.example.entity.Department;
 import com.example.entity.Room;
+import com.example.entity.RollupResolution;
 import com.example.entity.Tank;
 import com.example.service.AttributeService;
 import com.example.service.AttributeValueService;
 import com.example.service.DepartmentService;
+import com.example.service.ReadingImportService;
+import com.example.service.ReadingIngestService;
 import com.example.service.RoomService;
 import com.example.service.TankService;
 
+import jakarta.persistence.EntityNotFoundException;
+
 @RestController
 @RequestMapping("/attribute-values")
 @CrossOrigin(origins = "*") // Allow requests from any origin
@@ -38,26 +60,179 @@ public class AttributeValueController {
     private AttributeValueService attributeValueService;
 	@Autowired
     private AttributeService attributeService;
+    @Autowired
+    private AttributeCatalogue attributeCatalogue;
 	@Autowired
     private TankService tankService;
 	@Autowired
 	private RoomService roomService;
 	@Autowired
 	private DepartmentService departmentService;
+	@Autowired
+	private ReadingIngestService readingIngestService;
+	@Autowired
+	private ReadingImportService readingImportService;
+	@Autowired
+	private DataVersions dataVersions;
+	
+	@Value("${fishhatchery.ingest.async.retry-after-seconds:1}")
+	private int retryAfterSeconds;
 
 	
 	 /**
      * Create a new attribute value.
      *
      * @param attributeValue The attribute value to create.
-     * @return The created attribute value.
+     * @return The created attribute value, or 400 if one is older than the retention.
      */
     @PostMapping
-    public List<AttributeValue> createAttributeValue(@RequestBody List<AttributeValue> attributeValues) {
-        return attributeValueService.saveAttributeValues(attributeValues);
+    public ResponseEntity<List<AttributeValue>> createAttributeValue(@RequestBody List<AttributeValue> attributeValues) {
+        try {
+            return ResponseEntity.ok(attributeValueService.saveAttributeValues(attributeValues));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Insert readings of any number of tanks in JDBC batches.
+     * Meant for high-volume ingestion: nothing is returned but the number of readings inserted.
+     *
+     * @param readingRequests The readings, each naming its tank and attribute.
+     * @return ResponseEntity containing the number of readings inserted, or 400 if a reading is incomplete,
+     *         names an unknown tank or attribute, or is older than the retention.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> createReadings(@RequestBody List<ReadingRequest> readingRequests) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("inserted", attributeValueService.saveReadings(readingRequests));
+        } catch (IllegalArgumentException | EntityNotFoundException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Import readings from a CSV request body of tank,attribute,timestamp,value lines, streamed as it arrives.
+     * Tanks and attributes may be given by ID or by name. The body may be gzipped (Content-Encoding: gzip).
+     *
+     * @param body The request body.
+     * @param contentEncoding The Content-Encoding header, if any.
+     * @return ResponseEntity containing the import's counts and first rejected lines; 500 if it stopped early.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<ImportProgress> importReadings(
+            InputStream body,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding) throws IOException {
+        InputStream input = "gzip".equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(body, 64 * 1024) : body;
+        ImportProgress progress = readingImportService.importCsv(input);
+        if (progress.getError() != null) {
+            return ResponseEntity.internalServerError().body(progress);
+        }
+        return ResponseEntity.ok(progress);
+    }
+    
+    /**
+     * Get the progress of running and recent CSV imports.
+     *
+     * @return The imports, newest first.
+     */
+    @GetMapping("/import")
+    public List<ImportProgress> getImports() {
+        return readingImportService.getImports();
+    }
+    
+    /**
+     * Queue readings of any number of tanks for writing in the background.
+     * The readings are checked and queued as a whole; the response does not wait for the database.
+     *
+     * @param readingRequests The readings, each naming its tank and attribute.
+     * @return 202 with the number of readings queued, 400 if a reading is incomplete, names an unknown tank
+     *         or is older than the retention, 429 with Retry-After if the queue cannot take them, or 503 while shutting down.
+     */
+    @PostMapping("/async")
+    public ResponseEntity<Map<String, Object>> queueReadings(@RequestBody List<ReadingRequest> readingRequests) {
+        Map<String, Object> response = new HashMap<>();
+        ReadingIngestService.Result result;
+        try {
+            result = readingIngestService.offer(attributeValueService.toReadings(readingRequests));
+        } catch (IllegalArgumentException | EntityNotFoundException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+        response.put("queueDepth", readingIngestService.getQueueDepth());
+
+        switch (result) {
+            case QUEUE_FULL:
+                response.put("error", "Ingest queue is full");
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                        .body(response);
+            case SHUTTING_DOWN:
+                response.put("error", "Ingestion is shutting down");
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+            default:
+                response.put("accepted", readingRequests.size());
+                return ResponseEntity.accepted().body(response);
+        }
     }
     
     
+    /**
+     * Fill in the room and department columns of attribute values saved before those columns existed.
+     *
+     * @return The number of attribute values updated.
+     */
+    @PostMapping("/backfill-hierarchy")
+    public Map<String, Object> backfillHierarchyColumns() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("updated", attributeValueService.backfillHierarchyColumns());
+        return response;
+    }
+    
+    
+    /**
+     * Get the daily averages of several attributes over several tanks, rooms and departments in one call.
+     *
+     * @param request The scopes, as type (tank, room or department) and ID, the attribute IDs and the date range.
+     * @return ResponseEntity containing one entry per scope, each with one series per attribute; 404 if a scope does
+     *         not exist, 400 if a scope type or an attribute is unknown or the request is over its limits.
+     */
+    @PostMapping("/daily-average/batch")
+    public ResponseEntity<List<Map<String, Object>>> getDailyAveragesOfScopes(@RequestBody DailyAverageBatchRequest request) {
+        List<ScopeDailyAverages> scopes;
+        try {
+            scopes = attributeValueService.getDailyAveragesOfScopes(request);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+
+        List<Map<String, Object>> responseList = new ArrayList<>();
+        for (ScopeDailyAverages scope : scopes) {
+            List<Map<String, Object>> series = new ArrayList<>();
+            for (Map.Entry<Long, Map<LocalDate, Double>> attribute : scope.averagesByAttributeId().entrySet()) {
+                // The attribute may have been deleted since the averages were computed
+                Attribute cachedAttribute = attributeCatalogue.getById(attribute.getKey());
+                if (cachedAttribute == null) {
+                    continue;
+                }
+                Map<String, Object> attributeSeries = createResponse(attribute.getValue(), cachedAttribute.getName());
+                attributeSeries.put("attributeId", attribute.getKey());
+                series.add(attributeSeries);
+            }
+            Map<String, Object> scopeResponse = new HashMap<>();
+            scopeResponse.put("scope", scope.scope().name().toLowerCase());
+            scopeResponse.put("id", scope.id());
+            scopeResponse.put("series", series);
+            responseList.add(scopeResponse);
+        }
+        return ResponseEntity.ok(responseList);
+    }
+    
     /**
      * Get daily average attribute values for a specific tank between two dates.
      *
@@ -65,16 +240,27 @@ public class AttributeValueController {
      * @param attributeId The ID of the attribute.
      * @param startDate The start date of the time range.
      * @param endDate The end date of the time range.
-     * @return ResponseEntity containing the daily average attribute values in a specific format.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return ResponseEntity containing the daily average attribute values in a specific format; 404 if the tank or attribute does not exist.
      */
     @GetMapping("/tank/{tankId}/attribute/{attributeId}/daily-average")
     public ResponseEntity<Map<String, Object>> getDailyAverageAttributeValuesInTankBetweenDates(
             @PathVariable Long tankId,
             @PathVariable Long attributeId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersions.getTankVersion(tankId))) {
+            return null;
+        }
         Tank tank = tankService.getTankById(tankId);
         Attribute attribute = attributeService.getAttributeById(attributeId);
+        if (tank == null || attribute == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!DailyAggregator.isSupportedRange(startDate, endDate)) {
+            return ResponseEntity.badRequest().build();
+        }
 
         Map<LocalDate, Double> dailyAverages = attributeValueService.getDailyAverageAttributeValuesInTankBetweenDates(tank, attribute, startDate, endDate);
         Map<String, Object> response = createResponse(dailyAverages, attribute.getName());
@@ -89,14 +275,25 @@ public class AttributeValueController {
      * @param tankId    The ID of the tank.
      * @param startDate The start date for the calculation period.
      * @param endDate   The end date for the calculation period.
-     * @return A ResponseEntity containing the daily average values in the desired format.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return A ResponseEntity containing the daily average values in the desired format; 404 if the tank does not exist, 400 if the range is longer than ten years.
      */
     @GetMapping("/tank/{tankId}/daily-average")
     public ResponseEntity<List<Map<String, Object>>> getDailyAverageAllAttributesInTankBetweenDates(
             @PathVariable Long tankId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersions.getTankVersion(tankId))) {
+            return null;
+        }
     	Tank tank = tankService.getTankById(tankId);
+        if (tank == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!DailyAggregator.isSupportedRange(startDate, endDate)) {
+            return ResponseEntity.badRequest().build();
+        }
 
         Map<String, Map<LocalDate, Double>> dailyAveragesByAttribute = attributeValueService.getDailyAverageAllAttributesInTankBetweenDates(tank, startDate, endDate);
 
@@ -111,16 +308,27 @@ public class AttributeValueController {
      *
      * @param dailyAverages A map of daily average attribute values.
      * @param attributeName The name of the attribute.
-     * @return A response map containing data points and attribute name.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return A response map containing data points and attribute name; 404 if the room or attribute does not exist, 400 if the range is longer than ten years.
      */
     @GetMapping("/room/{roomId}/attribute/{attributeId}/daily-average")
     public ResponseEntity<Map<String, Object>> getDailyAverageAttributeValuesInRoomBetweenDates(
             @PathVariable Long roomId,
             @PathVariable Long attributeId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersions.getRoomVersion(roomId))) {
+            return null;
+        }
         Room room = roomService.getRoomById(roomId);
         Attribute attribute = attributeService.getAttributeById(attributeId);
+        if (room == null || attribute == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!DailyAggregator.isSupportedRange(startDate, endDate)) {
+            return ResponseEntity.badRequest().build();
+        }
 
         Map<LocalDate, Double> dailyAverages = attributeValueService.getDailyAverageAttributeValuesInRoomBetweenDates(room, attribute, startDate, endDate);
         Map<String, Object> response = createResponse(dailyAverages, attribute.getName());
@@ -134,14 +342,25 @@ public class AttributeValueController {
      * @param roomId     The ID of the room for which to calculate daily averages.
      * @param startDate  The start date of the calculation period.
      * @param endDate    The end date of the calculation period.
-     * @return A ResponseEntity containing a list of daily average values for each attribute.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return A ResponseEntity containing a list of daily average values for each attribute; 404 if the room does not exist, 400 if the range is longer than ten years.
      */
     @GetMapping("/room/{roomId}/daily-average")
     public ResponseEntity<List<Map<String, Object>>> getDailyAverageAllAttributesInRoomBetweenDates(
             @PathVariable Long roomId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersions.getRoomVersion(roomId))) {
+            return null;
+        }
         Room room = roomService.getRoomById(roomId);
+        if (room == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!DailyAggregator.isSupportedRange(startDate, endDate)) {
+            return ResponseEntity.badRequest().build();
+        }
 
         Map<String, Map<LocalDate, Double>> dailyAveragesByAttribute = attributeValueService.getDailyAverageAllAttributesInRoomBetweenDates(room, startDate, endDate);
 
@@ -158,18 +377,35 @@ public class AttributeValueController {
      * @param attributeId The ID of the attribute.
      * @param startDate The start date of the time range.
      * @param endDate The end date of the time range.
-     * @return ResponseEntity containing the daily average attribute values in a specific format.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return ResponseEntity containing the daily average attribute values in a specific format, 404 if the department or attribute does not exist, 400 if the range is longer than ten years,
+     *         or 503 if the rooms of the department were not all aggregated in time.
      */
     @GetMapping("/department/{departmentId}/attribute/{attributeId}/daily-average")
     public ResponseEntity<Map<String, Object>> getDailyAverageAttributeValuesInDepartmentBetweenDates(
             @PathVariable Long departmentId,
             @PathVariable Long attributeId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersions.getDepartmentVersion(departmentId))) {
+            return null;
+        }
         Department department = departmentService.getDepartmentById(departmentId);
         Attribute attribute = attributeService.getAttributeById(attributeId);
+        if (department == null || attribute == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!DailyAggregator.isSupportedRange(startDate, endDate)) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        Map<LocalDate, Double> dailyAverages = attributeValueService.getDailyAverageAttributeValuesInDepartmentBetweenDates(department, attribute, startDate, endDate);
+        Map<LocalDate, Double> dailyAverages;
+        try {
+            dailyAverages = attributeValueService.getDailyAverageAttributeValuesInDepartmentBetweenDates(department, attribute, startDate, endDate);
+        } catch (AnalyticsUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
         Map<String, Object> response = createResponse(dailyAverages, attribute.getName());
         
         return ResponseEntity.ok(response);
@@ -181,16 +417,33 @@ public class AttributeValueController {
      * @param departmentId The ID of the department for which to calculate daily averages.
      * @param startDate    The start date of the calculation period.
      * @param endDate      The end date of the calculation period.
-     * @return A ResponseEntity containing a list of daily average values for each attribute.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return A ResponseEntity containing a list of daily average values for each attribute, 404 if the department does not exist, 400 if the range is longer than ten years,
+     *         or 503 if the rooms of the department were not all aggregated in time.
      */
     @GetMapping("/department/{departmentId}/daily-average")
     public ResponseEntity<List<Map<String, Object>>> getDailyAverageAllAttributesInDepartmentBetweenDates(
             @PathVariable Long departmentId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersions.getDepartmentVersion(departmentId))) {
+            return null;
+        }
         Department department = departmentService.getDepartmentById(departmentId);
+        if (department == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!DailyAggregator.isSupportedRange(startDate, endDate)) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        Map<String, Map<LocalDate, Double>> dailyAveragesByAttribute = attributeValueService.getDailyAverageAllAttributesInDepartmentBetweenDates(department, startDate, endDate);
+        Map<String, Map<LocalDate, Double>> dailyAveragesByAttribute;
+        try {
+            dailyAveragesByAttribute = attributeValueService.getDailyAverageAllAttributesInDepartmentBetweenDates(department, startDate, endDate);
+        } catch (AnalyticsUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
 
         List<Map<String, Object>> responseList = createResponse(dailyAveragesByAttribute);
 
@@ -198,6 +451,112 @@ public class AttributeValueController {
     }
     
     
+    /**
+     * Get the average values of an attribute in a tank, bucketed by hour, day, week or month.
+     * The coarsest resolution that still yields the requested number of points is used.
+     *
+     * @param tankId The ID of the tank.
+     * @param attributeId The ID of the attribute.
+     * @param start The start of the time range.
+     * @param end The end of the time range.
+     * @param points The minimum number of points wanted over the range.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return ResponseEntity containing the bucket averages and the resolution used; 404 if the tank or attribute does not exist, 400 if the range is longer than ten years.
+     */
+    @GetMapping("/tank/{tankId}/attribute/{attributeId}/series")
+    public ResponseEntity<Map<String, Object>> getBucketedAttributeValuesInTank(
+            @PathVariable Long tankId,
+            @PathVariable Long attributeId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "50") int points,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersions.getTankVersion(tankId))) {
+            return null;
+        }
+        Tank tank = tankService.getTankById(tankId);
+        Attribute attribute = attributeService.getAttributeById(attributeId);
+        if (tank == null || attribute == null) {
+            return ResponseEntity.notFound().build();
+        }
+        RollupResolution resolution = RollupResolution.coarsestFor(start, end, points);
+
+        Map<LocalDateTime, Double> averages = attributeValueService.getBucketedAverageAttributeValuesInTank(tank, attribute, resolution, start, end);
+
+        return ResponseEntity.ok(createSeriesResponse(averages, attribute.getName(), resolution));
+    }
+    
+    /**
+     * Get the average values of an attribute in a room, bucketed by hour, day, week or month.
+     * The coarsest resolution that still yields the requested number of points is used.
+     *
+     * @param roomId The ID of the room.
+     * @param attributeId The ID of the attribute.
+     * @param start The start of the time range.
+     * @param end The end of the time range.
+     * @param points The minimum number of points wanted over the range.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return ResponseEntity containing the bucket averages and the resolution used; 404 if the room or attribute does not exist.
+     */
+    @GetMapping("/room/{roomId}/attribute/{attributeId}/series")
+    public ResponseEntity<Map<String, Object>> getBucketedAttributeValuesInRoom(
+            @PathVariable Long roomId,
+            @PathVariable Long attributeId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "50") int points,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersions.getRoomVersion(roomId))) {
+            return null;
+        }
+        Room room = roomService.getRoomById(roomId);
+        Attribute attribute = attributeService.getAttributeById(attributeId);
+        if (room == null || attribute == null) {
+            return ResponseEntity.notFound().build();
+        }
+        RollupResolution resolution = RollupResolution.coarsestFor(start, end, points);
+
+        Map<LocalDateTime, Double> averages = attributeValueService.getBucketedAverageAttributeValuesInRoom(room, attribute, resolution, start, end);
+
+        return ResponseEntity.ok(createSeriesResponse(averages, attribute.getName(), resolution));
+    }
+    
+    /**
+     * Get the average values of an attribute in a department, bucketed by hour, day, week or month.
+     * The coarsest resolution that still yields the requested number of points is used.
+     *
+     * @param departmentId The ID of the department.
+     * @param attributeId The ID of the attribute.
+     * @param start The start of the time range.
+     * @param end The end of the time range.
+     * @param points The minimum number of points wanted over the range.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return ResponseEntity containing the bucket averages and the resolution used; 404 if the department or attribute does not exist.
+     */
+    @GetMapping("/department/{departmentId}/attribute/{attributeId}/series")
+    public ResponseEntity<Map<String, Object>> getBucketedAttributeValuesInDepartment(
+            @PathVariable Long departmentId,
+            @PathVariable Long attributeId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "50") int points,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersions.getDepartmentVersion(departmentId))) {
+            return null;
+        }
+        Department department = departmentService.getDepartmentById(departmentId);
+        Attribute attribute = attributeService.getAttributeById(attributeId);
+        if (department == null || attribute == null) {
+            return ResponseEntity.notFound().build();
+        }
+        RollupResolution resolution = RollupResolution.coarsestFor(start, end, points);
+
+        Map<LocalDateTime, Double> averages = attributeValueService.getBucketedAverageAttributeValuesInDepartment(department, attribute, resolution, start, end);
+
+        return ResponseEntity.ok(createSeriesResponse(averages, attribute.getName(), resolution));
+    }
+    
+    
     /**
      * Create a response containing daily average FOR ONLY ONE attribute values.
      *
@@ -232,6 +591,31 @@ public class AttributeValueController {
     }
 
     
+    /**
+     * Create a response containing bucketed averages of one attribute.
+     *
+     * @param averages      The average value of each bucket, keyed by bucket start.
+     * @param attributeName The name of the attribute.
+     * @param resolution    The bucket size the averages were read at.
+     * @return A response map containing data points, attribute name and resolution.
+     */
+    private Map<String, Object> createSeriesResponse(Map<LocalDateTime, Double> averages, String attributeName, RollupResolution resolution) {
+        List<Map<String, Object>> dataPoints = new ArrayList<>();
+        for (Map.Entry<LocalDateTime, Double> entry : averages.entrySet()) {
+            Map<String, Object> dataPoint = new HashMap<>();
+            dataPoint.put("timestamp", entry.getKey());
+            dataPoint.put("value", entry.getValue());
+            dataPoints.add(dataPoint);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("dataPoints", dataPoints);
+        response.put("attribute", attributeName);
+        response.put("resolution", resolution);
+        return response;
+    }
+
+    
     /**
      * Creates the desired response format by formatting the daily averages for all attributes.
      *
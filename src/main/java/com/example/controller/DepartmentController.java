@@ -3,6 +3,7 @@ package com.example.controller;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,9 +11,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.example.cache.DataVersions;
+import com.example.dto.DepartmentNode;
+import com.example.dto.HierarchyView;
 import com.example.entity.Department;
+import com.example.entity.TankPurge;
 import com.example.service.DepartmentService;
 
 @RestController
@@ -22,26 +29,82 @@ public class DepartmentController {
     
 	@Autowired
     private DepartmentService departmentService;
+
+	@Autowired
+	private DataVersions dataVersions;
 	
+    /**
+     * Get every department, or one page of departments in ID order when a cursor or a limit is given.
+     *
+     * @param view       summary for flat departments with parent ID and child count, tree for nested children (the default),
+     *                   or full for the entities with their attribute values, which is not paginated.
+     * @param cursor     The next cursor of the previous page, for the page after it.
+     * @param limit      The largest number of departments on the page; fishhatchery.pagination.default-page-size if not given.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return The departments as a list, or a page of them with the cursor of the next page; 400 for an invalid view, cursor or limit.
+     */
     @GetMapping
-    public List<Department> getAllDepartments() {
-        return departmentService.getAllDepartments();
+    public ResponseEntity<?> getAllDepartments(
+            @RequestParam(defaultValue = "tree") String view,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        try {
+            HierarchyView hierarchyView = HierarchyView.valueOf(view.toUpperCase());
+            if (hierarchyView == HierarchyView.FULL) {
+                // Carries attribute values, which change without the hierarchy version
+                return ResponseEntity.ok(departmentService.getAllDepartments());
+            }
+            if (webRequest.checkNotModified(dataVersions.getHierarchyVersion())) {
+                return null;
+            }
+            boolean paged = cursor != null || limit != null;
+            if (hierarchyView == HierarchyView.SUMMARY) {
+                return ResponseEntity.ok(paged ? departmentService.getDepartmentSummaries(cursor, limit) : departmentService.getDepartmentSummaries());
+            }
+            return ResponseEntity.ok(paged ? departmentService.getDepartmentNodes(cursor, limit) : departmentService.getDepartmentNodes());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
+    /**
+     * Get one department.
+     *
+     * @param id         The ID of the department.
+     * @param view       summary, tree (the default) or full, as for the list.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return The department, or 400 for an invalid view.
+     */
     @GetMapping("/{id}")
-    public Department getDepartment(@PathVariable Long id) {
-        return departmentService.getDepartmentById(id);
+    public ResponseEntity<?> getDepartment(@PathVariable Long id, @RequestParam(defaultValue = "tree") String view, WebRequest webRequest) {
+        HierarchyView hierarchyView;
+        try {
+            hierarchyView = HierarchyView.valueOf(view.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (hierarchyView == HierarchyView.FULL) {
+            return ResponseEntity.ok(departmentService.getDepartmentById(id));
+        }
+        if (webRequest.checkNotModified(dataVersions.getHierarchyVersion())) {
+            return null;
+        }
+        if (hierarchyView == HierarchyView.SUMMARY) {
+            return ResponseEntity.ok(departmentService.getDepartmentSummaryById(id));
+        }
+        return ResponseEntity.ok(departmentService.getDepartmentNodeById(id));
     }
     
     @PostMapping
-    public List<Department> createOrUpdateDepartments(@RequestBody List<Department> departments) {
+    public List<DepartmentNode> createOrUpdateDepartments(@RequestBody List<Department> departments) {
     	return departmentService.createOrUpdateDepartments(departments);
     }
 
 
     @DeleteMapping("/{id}")
-    public void deleteDepartment(@PathVariable Long id) {
-        departmentService.deleteDepartment(id);
+    public List<TankPurge> deleteDepartment(@PathVariable Long id) {
+        return departmentService.deleteDepartment(id);
     }
 }
 
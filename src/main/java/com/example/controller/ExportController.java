@@ -0,0 +1,176 @@
+package com.example.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.service.ReadingExportService;
+import com.example.service.ReadingExportService.Format;
+
+@RestController
+@RequestMapping("/attribute-values/export")
+@CrossOrigin(origins = "*") // Allow requests from any origin
+public class ExportController {
+
+	@Autowired
+    private ReadingExportService readingExportService;
+
+    /**
+     * Export the raw readings of a tank as NDJSON or CSV, streamed as they are read.
+     *
+     * @param tankId The ID of the tank.
+     * @param start The start of the time range, inclusive.
+     * @param end The end of the time range, exclusive.
+     * @param format The line format, ndjson or csv.
+     * @param acceptEncoding The client's accepted encodings; the export is gzipped when they accept gzip.
+     * @return The streamed export, or 400 for an unknown format.
+     */
+    @GetMapping("/tank/{tankId}")
+    public ResponseEntity<StreamingResponseBody> exportTankReadings(
+            @PathVariable Long tankId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return createExportResponse("tank-" + tankId, format, acceptEncoding,
+                (exportFormat, output) -> readingExportService.exportTankReadings(tankId, start, end, exportFormat, output));
+    }
+
+    /**
+     * Export the raw readings of all tanks of a room as NDJSON or CSV, streamed as they are read.
+     *
+     * @param roomId The ID of the room.
+     * @param start The start of the time range, inclusive.
+     * @param end The end of the time range, exclusive.
+     * @param format The line format, ndjson or csv.
+     * @param acceptEncoding The client's accepted encodings; the export is gzipped when they accept gzip.
+     * @return The streamed export, or 400 for an unknown format.
+     */
+    @GetMapping("/room/{roomId}")
+    public ResponseEntity<StreamingResponseBody> exportRoomReadings(
+            @PathVariable Long roomId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return createExportResponse("room-" + roomId, format, acceptEncoding,
+                (exportFormat, output) -> readingExportService.exportRoomReadings(roomId, start, end, exportFormat, output));
+    }
+
+    /**
+     * Export the raw readings of all tanks of a department as NDJSON or CSV, streamed as they are read.
+     *
+     * @param departmentId The ID of the department.
+     * @param start The start of the time range, inclusive.
+     * @param end The end of the time range, exclusive.
+     * @param format The line format, ndjson or csv.
+     * @param acceptEncoding The client's accepted encodings; the export is gzipped when they accept gzip.
+     * @return The streamed export, or 400 for an unknown format.
+     */
+    @GetMapping("/department/{departmentId}")
+    public ResponseEntity<StreamingResponseBody> exportDepartmentReadings(
+            @PathVariable Long departmentId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return createExportResponse("department-" + departmentId, format, acceptEncoding,
+                (exportFormat, output) -> readingExportService.exportDepartmentReadings(departmentId, start, end, exportFormat, output));
+    }
+
+
+    /**
+     * Writes one export to the response.
+     */
+    private interface ExportWriter {
+        void write(Format format, OutputStream output) throws IOException;
+    }
+
+    /**
+     * Create a streamed export response, gzipped if the client accepts it.
+     *
+     * @param name The file name of the export, without extension.
+     * @param format The requested line format.
+     * @param acceptEncoding The client's Accept-Encoding header, if any.
+     * @param exportWriter Writes the readings to the response body.
+     * @return The response, or 400 for an unknown format.
+     */
+    private ResponseEntity<StreamingResponseBody> createExportResponse(String name, String format, String acceptEncoding, ExportWriter exportWriter) {
+        Format exportFormat;
+        try {
+            exportFormat = Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean gzip = acceptsGzip(acceptEncoding);
+
+        StreamingResponseBody body = output -> {
+            OutputStream target = gzip ? new GZIPOutputStream(output, 8192) : output;
+            exportWriter.write(exportFormat, target);
+            if (gzip) {
+                ((GZIPOutputStream) target).finish();
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "-readings." + exportFormat.getExtension() + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Whether an Accept-Encoding header allows gzip: it names gzip, or failing that *, with a quality above zero.
+     *
+     * @param acceptEncoding The client's Accept-Encoding header, if any.
+     * @return True if the response may be gzipped.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzipQuality = null;
+        Double wildcardQuality = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        // A malformed weight is read as not acceptable
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzipQuality = quality;
+            } else if (coding.equals("*")) {
+                wildcardQuality = quality;
+            }
+        }
+        Double quality = gzipQuality != null ? gzipQuality : wildcardQuality;
+        return quality != null && quality > 0;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.entity.TankPurge;
+import com.example.service.PurgeService;
+
+@RestController
+@RequestMapping("/purges")
+@CrossOrigin(origins = "*") // Allow requests from any origin
+public class PurgeController {
+
+	@Autowired
+    private PurgeService purgeService;
+
+    /**
+     * Get the progress of running and recent purges of deleted tanks.
+     *
+     * @return The purges, newest first.
+     */
+    @GetMapping
+    public List<TankPurge> getPurges() {
+        return purgeService.getPurges();
+    }
+
+    @GetMapping("/{id}")
+    public TankPurge getPurge(@PathVariable Long id) {
+        return purgeService.getPurgeById(id);
+    }
+}
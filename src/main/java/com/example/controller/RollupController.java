@@ -0,0 +1,30 @@
+package com.example.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.service.RollupService;
+
+@RestController
+@RequestMapping("/rollups")
+@CrossOrigin(origins = "*") // Allow requests from any origin
+public class RollupController {
+
+	@Autowired
+    private RollupService rollupService;
+
+    /**
+     * Rebuild the rollups of every tank from the existing attribute value history.
+     *
+     * @return The number of tanks processed and rollups written.
+     */
+    @PostMapping("/rebuild")
+    public Map<String, Object> rebuildRollups() {
+        return rollupService.rebuildRollups();
+    }
+}
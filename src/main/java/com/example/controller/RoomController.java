@@ -3,6 +3,7 @@ package com.example.controller;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,9 +11,14 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.example.cache.DataVersions;
+import com.example.dto.HierarchyView;
 import com.example.entity.Room;
+import com.example.entity.TankPurge;
 import com.example.service.RoomService;
 
 @RestController
@@ -23,14 +29,70 @@ public class RoomController {
 	@Autowired
     private RoomService roomService;
 
+	@Autowired
+	private DataVersions dataVersions;
+
+    /**
+     * Get every room, or one page of rooms in ID order when a cursor or a limit is given.
+     *
+     * @param view       summary for flat rooms with parent ID and child count, tree for nested children (the default),
+     *                   or full for the entities with their attribute values, which is not paginated.
+     * @param cursor     The next cursor of the previous page, for the page after it.
+     * @param limit      The largest number of rooms on the page; fishhatchery.pagination.default-page-size if not given.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return The rooms as a list, or a page of them with the cursor of the next page; 400 for an invalid view, cursor or limit.
+     */
     @GetMapping
-    public List<Room> getAllRooms() {
-        return roomService.getAllRooms();
+    public ResponseEntity<?> getAllRooms(
+            @RequestParam(defaultValue = "tree") String view,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        try {
+            HierarchyView hierarchyView = HierarchyView.valueOf(view.toUpperCase());
+            if (hierarchyView == HierarchyView.FULL) {
+                // Carries attribute values, which change without the hierarchy version
+                return ResponseEntity.ok(roomService.getAllRooms());
+            }
+            if (webRequest.checkNotModified(dataVersions.getHierarchyVersion())) {
+                return null;
+            }
+            boolean paged = cursor != null || limit != null;
+            if (hierarchyView == HierarchyView.SUMMARY) {
+                return ResponseEntity.ok(paged ? roomService.getRoomSummaries(cursor, limit) : roomService.getRoomSummaries());
+            }
+            return ResponseEntity.ok(paged ? roomService.getRoomNodes(cursor, limit) : roomService.getRoomNodes());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
+    /**
+     * Get one room.
+     *
+     * @param id         The ID of the room.
+     * @param view       summary, tree (the default) or full, as for the list.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return The room, or 400 for an invalid view.
+     */
     @GetMapping("/{id}")
-    public Room getRoom(@PathVariable Long id) {
-        return roomService.getRoomById(id);
+    public ResponseEntity<?> getRoom(@PathVariable Long id, @RequestParam(defaultValue = "tree") String view, WebRequest webRequest) {
+        HierarchyView hierarchyView;
+        try {
+            hierarchyView = HierarchyView.valueOf(view.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (hierarchyView == HierarchyView.FULL) {
+            return ResponseEntity.ok(roomService.getRoomById(id));
+        }
+        if (webRequest.checkNotModified(dataVersions.getHierarchyVersion())) {
+            return null;
+        }
+        if (hierarchyView == HierarchyView.SUMMARY) {
+            return ResponseEntity.ok(roomService.getRoomSummaryById(id));
+        }
+        return ResponseEntity.ok(roomService.getRoomNodeById(id));
     }
 
     @PostMapping
@@ -39,8 +101,8 @@ public class RoomController {
     }
 
     @DeleteMapping("/{id}")
-    public void deleteRoom(@PathVariable Long id) {
-        roomService.deleteRoom(id);
+    public List<TankPurge> deleteRoom(@PathVariable Long id) {
+        return roomService.deleteRoom(id);
     }
 }
 
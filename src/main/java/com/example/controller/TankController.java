@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,13 +16,20 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.example.cache.DataVersions;
+import com.example.dto.AttributeReading;
 import com.example.dto.AttributeValueRequest;
-import com.example.entity.AttributeValue;
+import com.example.dto.CursorPage;
+import com.example.dto.HierarchyView;
 import com.example.entity.Tank;
+import com.example.entity.TankPurge;
 import com.example.service.AttributeValueService;
 import com.example.service.TankService;
 
+import jakarta.persistence.EntityNotFoundException;
+
 
 @RestController
 @RequestMapping("/tanks")
@@ -30,18 +38,74 @@ public class TankController {
     
 	@Autowired
     private TankService tankService;
+
+	@Autowired
+	private DataVersions dataVersions;
 	
 	@Autowired
 	private AttributeValueService attributeValueService;
 
+    /**
+     * Get every tank, or one page of tanks in ID order when a cursor or a limit is given.
+     *
+     * @param view       summary for flat tanks with parent ID and child count, tree for nested children (the default),
+     *                   or full for the entities with their attribute values, which is not paginated.
+     * @param cursor     The next cursor of the previous page, for the page after it.
+     * @param limit      The largest number of tanks on the page; fishhatchery.pagination.default-page-size if not given.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return The tanks as a list, or a page of them with the cursor of the next page; 400 for an invalid view, cursor or limit.
+     */
     @GetMapping
-    public List<Tank> getAllTanks() {
-        return tankService.getAllTanks();
+    public ResponseEntity<?> getAllTanks(
+            @RequestParam(defaultValue = "tree") String view,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        try {
+            HierarchyView hierarchyView = HierarchyView.valueOf(view.toUpperCase());
+            if (hierarchyView == HierarchyView.FULL) {
+                // Carries attribute values, which change without the hierarchy version
+                return ResponseEntity.ok(tankService.getAllTanks());
+            }
+            if (webRequest.checkNotModified(dataVersions.getHierarchyVersion())) {
+                return null;
+            }
+            boolean paged = cursor != null || limit != null;
+            if (hierarchyView == HierarchyView.SUMMARY) {
+                return ResponseEntity.ok(paged ? tankService.getTankSummaries(cursor, limit) : tankService.getTankSummaries());
+            }
+            return ResponseEntity.ok(paged ? tankService.getTankNodes(cursor, limit) : tankService.getTankNodes());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
+    /**
+     * Get one tank.
+     *
+     * @param id         The ID of the tank.
+     * @param view       summary, tree (the default) or full, as for the list.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return The tank, or 400 for an invalid view.
+     */
     @GetMapping("/{id}")
-    public Tank getTank(@PathVariable Long id) {
-        return tankService.getTankById(id);
+    public ResponseEntity<?> getTank(@PathVariable Long id, @RequestParam(defaultValue = "tree") String view, WebRequest webRequest) {
+        HierarchyView hierarchyView;
+        try {
+            hierarchyView = HierarchyView.valueOf(view.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (hierarchyView == HierarchyView.FULL) {
+            return ResponseEntity.ok(tankService.getTankById(id));
+        }
+        if (webRequest.checkNotModified(dataVersions.getHierarchyVersion())) {
+            return null;
+        }
+        if (hierarchyView == HierarchyView.SUMMARY) {
+            return ResponseEntity.ok(tankService.getTankSummaryById(id));
+        }
+        return ResponseEntity.ok(tankService.getTankNodeById(id));
     }
 
     @PostMapping
@@ -50,30 +114,88 @@ public class TankController {
     }
 
     @DeleteMapping("/{id}")
-    public void deleteTank(@PathVariable Long id) {
-        tankService.deleteTank(id);
+    public TankPurge deleteTank(@PathVariable Long id) {
+        return tankService.deleteTank(id);
     }
     
     @PostMapping("/{tankId}/attributeValues")
-    public Tank saveAttributeValuesToTank(
+    public ResponseEntity<List<AttributeReading>> saveAttributeValuesToTank(
             @PathVariable Long tankId,
             @RequestBody List<AttributeValueRequest> attributeValueRequests,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate specificDate) { 
     	
-    	return tankService.saveAttributeValuesToTankWithDate(tankId, attributeValueRequests, specificDate);
+        try {
+            return ResponseEntity.ok(tankService.saveAttributeValuesToTankWithDate(tankId, attributeValueRequests, specificDate));
+        } catch (IllegalArgumentException | EntityNotFoundException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
     
+    /**
+     * Get the readings of a tank on one day, ordered by attribute; one page of them when a cursor or a limit is given.
+     *
+     * @param id         The ID of the tank.
+     * @param date       The day, as yyyy-MM-dd.
+     * @param cursor     The next cursor of the previous page, for the page after it.
+     * @param limit      The largest number of readings on the page; fishhatchery.pagination.default-page-size if not given.
+     * @param webRequest The request, answered with 304 Not Modified while its ETag is current.
+     * @return The readings as a list, or a page of them with the cursor of the next page; 400 for an invalid cursor or limit.
+     */
     @GetMapping("/{id}/attribute-values/{date}")
-    public List<AttributeValue> getTankAttributeValuesByDate(
+    public ResponseEntity<?> getTankAttributeValuesByDate(
         @PathVariable Long id,
-        @PathVariable String date
+        @PathVariable String date,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer limit,
+        WebRequest webRequest
     ) {
-        Tank tank = tankService.getTankById(id);
+        if (webRequest.checkNotModified(dataVersions.getTankVersion(id))) {
+            return null;
+        }
         LocalDate localDate = LocalDate.parse(date);
         LocalDateTime startDateTime = localDate.atStartOfDay(); // Convert LocalDate to LocalDateTime
         LocalDateTime endDateTime = localDate.plusDays(1).atStartOfDay(); // Next day at start time
 
-        return attributeValueService.getByTankAndDateRange(tank, startDateTime, endDateTime);
+        if (cursor == null && limit == null) {
+            return ResponseEntity.ok(attributeValueService.getByTankAndDateRange(id, startDateTime, endDateTime));
+        }
+        try {
+            return ResponseEntity.ok(attributeValueService.getByTankAndDateRange(id, startDateTime, endDateTime, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Get the raw readings of one attribute of a tank, one page at a time in chronological order.
+     * Pages are found by seeking to the cursor, so a late page costs the same as the first.
+     *
+     * @param id          The ID of the tank.
+     * @param attributeId The ID of the attribute.
+     * @param start       The start of the time range, inclusive.
+     * @param end         The end of the time range, exclusive.
+     * @param cursor      The next cursor of the previous page, for the page after it.
+     * @param limit       The largest number of readings on the page; fishhatchery.pagination.default-page-size if not given.
+     * @param webRequest  The request, answered with 304 Not Modified while its ETag is current.
+     * @return The page of readings with the cursor of the next page, or 400 for an invalid cursor or limit.
+     */
+    @GetMapping("/{id}/readings")
+    public ResponseEntity<CursorPage<AttributeReading>> getTankReadings(
+            @PathVariable Long id,
+            @RequestParam Long attributeId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersions.getTankVersion(id))) {
+            return null;
+        }
+        try {
+            return ResponseEntity.ok(attributeValueService.getReadingsPage(id, attributeId, start, end, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
 }
@@ -0,0 +1,9 @@
+package com.example.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single attribute value of a known tank, read without loading the entity, its tank or its attribute.
+ */
+public record AttributeReading(Long attributeId, LocalDateTime timestamp, double value) {
+}
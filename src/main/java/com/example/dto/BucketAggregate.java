@@ -0,0 +1,37 @@
+package com.example.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sum, count, minimum and maximum of the values of one attribute over one rollup bucket.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BucketAggregate {
+    private Long attributeId;
+    private LocalDateTime bucketStart;
+    private Double sum;
+    private Long count;
+    private Double min;
+    private Double max;
+
+    /**
+     * Hourly bucket, as grouped from the raw attribute values.
+     */
+    public BucketAggregate(Long attributeId, LocalDate day, Integer hour, Double sum, Long count, Double min, Double max) {
+        this(attributeId, day.atTime(hour, 0), sum, count, min, max);
+    }
+
+    /**
+     * Bucket whose start is not part of the query result.
+     */
+    public BucketAggregate(Long attributeId, Double sum, Long count, Double min, Double max) {
+        this(attributeId, null, sum, count, min, max);
+    }
+}
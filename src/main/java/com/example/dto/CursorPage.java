@@ -0,0 +1,39 @@
+package com.example.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a list in key order, with the token of the next page, or null on the last page.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+
+    /**
+     * Make a page from items fetched one beyond the page size, which tells whether another page follows.
+     *
+     * @param items    Up to pageSize + 1 items, in key order.
+     * @param pageSize The largest number of items on the page.
+     * @param cursorOf The cursor after an item.
+     * @return The page.
+     */
+    public static <T> CursorPage<T> of(List<T> items, int pageSize, Function<T, PageCursor> cursorOf) {
+        if (items.size() <= pageSize) {
+            return new CursorPage<>(items, null);
+        }
+        List<T> page = items.subList(0, pageSize);
+        return new CursorPage<>(page, cursorOf.apply(page.get(pageSize - 1)).encode());
+    }
+
+    /**
+     * @param mapper Converts an item.
+     * @return This page with its items converted, and the same next cursor.
+     */
+    public <R> CursorPage<R> map(Function<T, R> mapper) {
+        List<R> mapped = new ArrayList<>(items.size());
+        for (T item : items) {
+            mapped.add(mapper.apply(item));
+        }
+        return new CursorPage<>(mapped, nextCursor);
+    }
+}
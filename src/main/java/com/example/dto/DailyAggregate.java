@@ -0,0 +1,20 @@
+package com.example.dto;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sum and count of the readings of one attribute on one day, as returned by the grouped daily queries.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyAggregate {
+    private Long attributeId;
+    private LocalDate day;
+    private Double sum;
+    private Long count;
+}
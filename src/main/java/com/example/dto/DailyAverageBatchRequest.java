@@ -0,0 +1,27 @@
+package com.example.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * The daily averages of several attributes over several tanks, rooms and departments, for one date range.
+ */
+@Data
+public class DailyAverageBatchRequest {
+    private List<ScopeId> scopes;
+    private List<Long> attributeIds;
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    /**
+     * A tank, room or department.
+     */
+    @Data
+    public static class ScopeId {
+        // tank, room or department
+        private String type;
+        private Long id;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.dto;
+
+import java.util.List;
+
+/**
+ * A department in the hierarchy snapshot, with its rooms.
+ */
+public record DepartmentNode(Long id, String name, List<RoomNode> rooms) {
+}
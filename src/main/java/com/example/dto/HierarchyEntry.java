@@ -0,0 +1,7 @@
+package com.example.dto;
+
+/**
+ * The ID, name and parent ID of a room or tank, for building the hierarchy without loading entities.
+ */
+public record HierarchyEntry(Long id, String name, Long parentId) {
+}
@@ -0,0 +1,22 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A department, room or tank without its children, for building trees on the client.
+ * The child count is the number of rooms of a department or tanks of a room, and left out for tanks.
+ */
+public record HierarchySummary(Long id, String name, Long parentId, @JsonInclude(JsonInclude.Include.NON_NULL) Integer childCount) {
+
+    public static HierarchySummary of(DepartmentNode department) {
+        return new HierarchySummary(department.id(), department.name(), null, department.rooms().size());
+    }
+
+    public static HierarchySummary of(RoomNode room) {
+        return new HierarchySummary(room.id(), room.name(), room.departmentId(), room.tanks().size());
+    }
+
+    public static HierarchySummary of(TankNode tank) {
+        return new HierarchySummary(tank.id(), tank.name(), tank.roomId(), null);
+    }
+}
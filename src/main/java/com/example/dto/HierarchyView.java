@@ -0,0 +1,13 @@
+package com.example.dto;
+
+/**
+ * How much of the hierarchy a department, room or tank response carries.
+ */
+public enum HierarchyView {
+    /** Flat ID, name, parent ID and child count, from the hierarchy snapshot. */
+    SUMMARY,
+    /** Nested rooms and tanks, from the hierarchy snapshot. */
+    TREE,
+    /** The entities with their attribute values, loaded from the database. */
+    FULL
+}
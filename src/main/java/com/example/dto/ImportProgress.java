@@ -0,0 +1,26 @@
+package com.example.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import lombok.Data;
+
+/**
+ * Progress of one bulk import, updated by the importing thread while it runs.
+ */
+@Data
+public class ImportProgress {
+    private final long id;
+    private final LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile long linesRead;
+    private volatile long imported;
+    private volatile long rejected;
+    private volatile int chunksCommitted;
+    private volatile String error;
+
+    // The first rejected lines, with the reason, so a bad file can be fixed without reading the whole log.
+    // Serialized while the import still adds to it; the list is short, so copying it on every add is cheap
+    private final List<String> rejectedLines = new CopyOnWriteArrayList<>();
+}
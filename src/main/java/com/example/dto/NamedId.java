@@ -0,0 +1,7 @@
+package com.example.dto;
+
+/**
+ * The ID and name of an entity, for lookups that need nothing else.
+ */
+public record NamedId(Long id, String name) {
+}
@@ -0,0 +1,48 @@
+package com.example.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * The sort key of the last item of a page, from which the next page continues.
+ * Handed to clients as an opaque URL-safe token; hierarchy pages only use the ID.
+ */
+public record PageCursor(Long attributeId, LocalDateTime timestamp, Long id) {
+
+    /**
+     * @param id The ID of the last item.
+     * @return A cursor after the item.
+     */
+    public static PageCursor after(Long id) {
+        return new PageCursor(null, null, id);
+    }
+
+    /**
+     * @return The token passed back by clients to get the next page.
+     */
+    public String encode() {
+        String key = (attributeId == null ? "" : attributeId) + "|" + (timestamp == null ? "" : timestamp) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token A token made by {@link #encode()}.
+     * @return The cursor.
+     * @throws IllegalArgumentException If the token was not made by {@link #encode()}.
+     */
+    public static PageCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new PageCursor(
+                    parts[0].isEmpty() ? null : Long.valueOf(parts[0]),
+                    parts[1].isEmpty() ? null : LocalDateTime.parse(parts[1]),
+                    Long.valueOf(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
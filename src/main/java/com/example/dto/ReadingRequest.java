@@ -0,0 +1,13 @@
+package com.example.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.Data;
+
+@Data
+public class ReadingRequest {
+    private Long tankId;
+    private Long attributeId;
+    private LocalDateTime timestamp;
+    private double value;
+}
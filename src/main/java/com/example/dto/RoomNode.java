@@ -0,0 +1,11 @@
+package com.example.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A room in the hierarchy snapshot, with its tanks.
+ */
+public record RoomNode(Long id, String name, @JsonIgnore Long departmentId, List<TankNode> tanks) {
+}
@@ -0,0 +1,12 @@
+package com.example.dto;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import com.example.cache.DailyAverageCache.Scope;
+
+/**
+ * The daily averages of a tank, room or department, per attribute ID.
+ */
+public record ScopeDailyAverages(Scope scope, Long id, Map<Long, Map<LocalDate, Double>> averagesByAttributeId) {
+}
@@ -0,0 +1,9 @@
+package com.example.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single attribute value of a known tank together with its row ID, for comparing stored readings with submitted ones.
+ */
+public record StoredReading(Long id, Long attributeId, LocalDateTime timestamp, double value) {
+}
@@ -0,0 +1,22 @@
+package com.example.dto;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sum and count of the readings of one attribute in one tank on one day, as returned by the grouped daily queries
+ * over many tanks at once.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TankDailyAggregate {
+    private Long tankId;
+    private Long attributeId;
+    private LocalDate day;
+    private Double sum;
+    private Long count;
+}
@@ -0,0 +1,9 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A tank in the hierarchy snapshot, without its attribute values.
+ */
+public record TankNode(Long id, String name, @JsonIgnore Long roomId) {
+}
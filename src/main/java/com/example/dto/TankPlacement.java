@@ -0,0 +1,7 @@
+package com.example.dto;
+
+/**
+ * Where a tank sits in the hierarchy, by ID only.
+ */
+public record TankPlacement(Long tankId, Long roomId, Long departmentId) {
+}
@@ -0,0 +1,9 @@
+package com.example.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single attribute value reduced to what the in-memory analytics need, without loading the entity.
+ */
+public record TankReading(Long tankId, Long attributeId, LocalDateTime timestamp, double value) {
+}
@@ -0,0 +1,45 @@
+package com.example.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+
+/**
+ * Sum, count, minimum and maximum of the values of one attribute in one tank over one hour, day, week or month.
+ * Maintained by {@link com.example.service.RollupService} whenever readings are written.
+ */
+@Entity
+@Data
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_rollup_tank_attribute_bucket", columnNames = {"tank_id", "attribute_id", "resolution", "bucketStart"}))
+public class AttributeRollup {
+	@Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "tank_id", nullable = false)
+    private Long tankId;
+
+    @Column(name = "attribute_id", nullable = false)
+    private Long attributeId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private RollupResolution resolution;
+
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    private double valueSum;
+    private long valueCount;
+    private double valueMin;
+    private double valueMax;
+}
@@ -3,32 +3,66 @@ package com.example.entity;
 import java.time.LocalDateTime;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import jakarta.persistence.Column;
+import jakarta.persistence.ConstraintMode;
 import jakarta.persistence.Entity;
+import jakarta.persistence.ForeignKey;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
 import lombok.Data;
 
 @Entity
 @Data
+@Table(indexes = {
+        @Index(name = "idx_attribute_value_tank_attribute_timestamp", columnList = "tank_id, attribute_id, timestamp"),
+        @Index(name = "idx_attribute_value_room_attribute_timestamp", columnList = "room_id, attribute_id, timestamp"),
+        @Index(name = "idx_attribute_value_department_attribute_timestamp", columnList = "department_id, attribute_id, timestamp")
+})
 //@JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
 public class AttributeValue {
 	@Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // No foreign keys: MySQL does not support them on partitioned tables, and the readings of deleted tanks
+    // stay behind until PurgeService removes them. Older databases lose theirs in ReadingSchemaService.
     @ManyToOne
-    @JoinColumn(name = "tank_id")
+    @JoinColumn(name = "tank_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     @JsonBackReference
     private Tank tank;
 
     @ManyToOne
-    @JoinColumn(name = "attribute_id")
+    @JoinColumn(name = "attribute_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Attribute attribute;
 
     private LocalDateTime timestamp;
     private double value;
+
+    // Copies of the tank's room and department, so room and department queries do not join through Tank and Room.
+    // Kept up to date by DepartmentService when tanks or rooms move.
+    @Column(name = "room_id")
+    @JsonIgnore
+    private Long roomId;
+
+    @Column(name = "department_id")
+    @JsonIgnore
+    private Long departmentId;
+
+    @PrePersist
+    void copyHierarchyFromTank() {
+        if (tank != null && tank.getRoom() != null) {
+            roomId = tank.getRoom().getId();
+            if (tank.getRoom().getDepartment() != null) {
+                departmentId = tank.getRoom().getDepartment().getId();
+            }
+        }
+    }
 }
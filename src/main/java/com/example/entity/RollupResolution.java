@@ -0,0 +1,86 @@
+package com.example.entity;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Bucket sizes of the attribute value rollups, from finest to coarsest.
+ * Weeks start on Monday.
+ */
+public enum RollupResolution {
+    HOUR,
+    DAY,
+    WEEK,
+    MONTH;
+
+    /**
+     * Start of the bucket that contains the given timestamp.
+     */
+    public LocalDateTime truncate(LocalDateTime timestamp) {
+        switch (this) {
+            case HOUR:
+                return timestamp.truncatedTo(ChronoUnit.HOURS);
+            case DAY:
+                return timestamp.truncatedTo(ChronoUnit.DAYS);
+            case WEEK:
+                return timestamp.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            default:
+                return timestamp.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        }
+    }
+
+    /**
+     * Start of the bucket that follows the bucket starting at the given timestamp.
+     */
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        switch (this) {
+            case HOUR:
+                return bucketStart.plusHours(1);
+            case DAY:
+                return bucketStart.plusDays(1);
+            case WEEK:
+                return bucketStart.plusWeeks(1);
+            default:
+                return bucketStart.plusMonths(1);
+        }
+    }
+
+    /**
+     * Number of buckets that overlap the range between start and end.
+     */
+    public long bucketCount(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime first = truncate(start);
+        LocalDateTime last = truncate(end);
+        switch (this) {
+            case HOUR:
+                return ChronoUnit.HOURS.between(first, last) + 1;
+            case DAY:
+                return ChronoUnit.DAYS.between(first, last) + 1;
+            case WEEK:
+                return ChronoUnit.WEEKS.between(first, last) + 1;
+            default:
+                return ChronoUnit.MONTHS.between(first, last) + 1;
+        }
+    }
+
+    /**
+     * Picks the coarsest resolution that still yields at least the requested number of points over a range,
+     * falling back to hourly buckets for short ranges.
+     *
+     * @param start  The start of the range.
+     * @param end    The end of the range.
+     * @param points The minimum number of points wanted.
+     * @return The resolution to read the range at.
+     */
+    public static RollupResolution coarsestFor(LocalDateTime start, LocalDateTime end, int points) {
+        RollupResolution[] resolutions = values();
+        for (int i = resolutions.length - 1; i > 0; i--) {
+            if (resolutions[i].bucketCount(start, end) >= points) {
+                return resolutions[i];
+            }
+        }
+        return HOUR;
+    }
+}
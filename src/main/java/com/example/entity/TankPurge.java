@@ -0,0 +1,40 @@
+package com.example.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * A deleted tank whose attribute values and rollups are removed in the background by
+ * {@link com.example.service.PurgeService}. Kept once the purge finished, as a record of it.
+ */
+@Entity
+@Data
+@Table(indexes = @Index(name = "idx_tank_purge_finished_at", columnList = "finishedAt"))
+public class TankPurge {
+	@Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // The tank row is gone, so there is nothing to reference
+    @Column(name = "tank_id", nullable = false)
+    private Long tankId;
+
+    private String tankName;
+
+    @Column(nullable = false)
+    private LocalDateTime requestedAt;
+
+    // Null while the purge is running
+    private LocalDateTime finishedAt;
+
+    private long readingsDeleted;
+    private long rollupsDeleted;
+}
@@ -0,0 +1,7 @@
+package com.example.event;
+
+/**
+ * Published whenever departments, rooms or tanks were created, changed or deleted.
+ */
+public record HierarchyChangedEvent() {
+}
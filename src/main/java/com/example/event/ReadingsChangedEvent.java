@@ -0,0 +1,13 @@
+package com.example.event;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Published whenever attribute values of a tank were written or deleted.
+ *
+ * @param tankId The ID of the tank whose attribute values changed.
+ * @param days   The days on which attribute values changed.
+ */
+public record ReadingsChangedEvent(Long tankId, Set<LocalDate> days) {
+}
@@ -0,0 +1,246 @@
+package com.example.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.dto.BucketAggregate;
+import com.example.dto.DailyAggregate;
+import com.example.dto.TankDailyAggregate;
+import com.example.entity.AttributeRollup;
+import com.example.entity.RollupResolution;
+
+@Repository
+public interface AttributeRollupRepository extends JpaRepository<AttributeRollup, Long> {
+
+    /**
+     * Daily sums and counts of one attribute of a tank between two dates, read from the daily rollups.
+     *
+     * @param tankId The ID of the tank.
+     * @param attributeId The ID of the attribute.
+     * @param start The first day of the range, at start of day.
+     * @param end The last day of the range, at start of day.
+     * @return One aggregate per day that has at least one value.
+     */
+    @Query("SELECT new com.example.dto.DailyAggregate(r.attributeId, CAST(r.bucketStart AS LocalDate), SUM(r.valueSum), SUM(r.valueCount)) " +
+            "FROM AttributeRollup r " +
+            "WHERE r.tankId = :tankId " +
+            "AND r.attributeId = :attributeId " +
+            "AND r.resolution = com.example.entity.RollupResolution.DAY " +
+            "AND r.bucketStart BETWEEN :start AND :end " +
+            "GROUP BY r.attributeId, CAST(r.bucketStart AS LocalDate)")
+    List<DailyAggregate> findDailyAggregatesInTank(
+            @Param("tankId") Long tankId,
+            @Param("attributeId") Long attributeId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Daily sums and counts of every attribute of a tank between two dates, read from the daily rollups.
+     *
+     * @param tankId The ID of the tank.
+     * @param start The first day of the range, at start of day.
+     * @param end The last day of the range, at start of day.
+     * @return One aggregate per attribute and day that has at least one value.
+     */
+    @Query("SELECT new com.example.dto.DailyAggregate(r.attributeId, CAST(r.bucketStart AS LocalDate), SUM(r.valueSum), SUM(r.valueCount)) " +
+            "FROM AttributeRollup r " +
+            "WHERE r.tankId = :tankId " +
+            "AND r.resolution = com.example.entity.RollupResolution.DAY " +
+            "AND r.bucketStart BETWEEN :start AND :end " +
+            "GROUP BY r.attributeId, CAST(r.bucketStart AS LocalDate)")
+    List<DailyAggregate> findDailyAggregatesInTank(
+            @Param("tankId") Long tankId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Retrieves the daily sums and counts of some attributes in many tanks at once, per tank.
+     *
+     * @param tankIds The IDs of the tanks.
+     * @param attributeIds The IDs of the attributes.
+     * @param start The first day of the range, at start of day.
+     * @param end The last day of the range, at start of day.
+     * @return One aggregate per tank, attribute and day that has at least one value.
+     */
+    @Query("SELECT new com.example.dto.TankDailyAggregate(r.tankId, r.attributeId, CAST(r.bucketStart AS LocalDate), SUM(r.valueSum), SUM(r.valueCount)) " +
+            "FROM AttributeRollup r " +
+            "WHERE r.tankId IN :tankIds " +
+            "AND r.attributeId IN :attributeIds " +
+            "AND r.resolution = com.example.entity.RollupResolution.DAY " +
+            "AND r.bucketStart BETWEEN :start AND :end " +
+            "GROUP BY r.tankId, r.attributeId, CAST(r.bucketStart AS LocalDate)")
+    List<TankDailyAggregate> findDailyAggregatesByTank(
+            @Param("tankIds") Collection<Long> tankIds,
+            @Param("attributeIds") Collection<Long> attributeIds,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Daily sums and counts of one attribute over all tanks of a room between two dates, read from the daily rollups.
+     *
+     * @param roomId The ID of the room.
+     * @param attributeId The ID of the attribute.
+     * @param start The first day of the range, at start of day.
+     * @param end The last day of the range, at start of day.
+     * @return One aggregate per day that has at least one value.
+     */
+    @Query("SELECT new com.example.dto.DailyAggregate(r.attributeId, CAST(r.bucketStart AS LocalDate), SUM(r.valueSum), SUM(r.valueCount)) " +
+            "FROM AttributeRollup r " +
+            "WHERE r.tankId IN (SELECT t.id FROM Tank t WHERE t.room.id = :roomId) " +
+            "AND r.attributeId = :attributeId " +
+            "AND r.resolution = com.example.entity.RollupResolution.DAY " +
+            "AND r.bucketStart BETWEEN :start AND :end " +
+            "GROUP BY r.attributeId, CAST(r.bucketStart AS LocalDate)")
+    List<DailyAggregate> findDailyAggregatesInRoom(
+            @Param("roomId") Long roomId,
+            @Param("attributeId") Long attributeId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Daily sums and counts of every attribute over all tanks of a room between two dates, read from the daily rollups.
+     *
+     * @param roomId The ID of the room.
+     * @param start The first day of the range, at start of day.
+     * @param end The last day of the range, at start of day.
+     * @return One aggregate per attribute and day that has at least one value.
+     */
+    @Query("SELECT new com.example.dto.DailyAggregate(r.attributeId, CAST(r.bucketStart AS LocalDate), SUM(r.valueSum), SUM(r.valueCount)) " +
+            "FROM AttributeRollup r " +
+            "WHERE r.tankId IN (SELECT t.id FROM Tank t WHERE t.room.id = :roomId) " +
+            "AND r.resolution = com.example.entity.RollupResolution.DAY " +
+            "AND r.bucketStart BETWEEN :start AND :end " +
+            "GROUP BY r.attributeId, CAST(r.bucketStart AS LocalDate)")
+    List<DailyAggregate> findDailyAggregatesInRoom(
+            @Param("roomId") Long roomId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Per-bucket sums, counts, minimums and maximums of one attribute of a tank at a given resolution.
+     *
+     * @param tankId The ID of the tank.
+     * @param attributeId The ID of the attribute.
+     * @param resolution The rollup resolution to read.
+     * @param start The start of the first bucket.
+     * @param end The end of the range, exclusive.
+     * @return One aggregate per bucket that has at least one value, in chronological order.
+     */
+    @Query("SELECT new com.example.dto.BucketAggregate(r.attributeId, r.bucketStart, SUM(r.valueSum), SUM(r.valueCount), MIN(r.valueMin), MAX(r.valueMax)) " +
+            "FROM AttributeRollup r " +
+            "WHERE r.tankId = :tankId " +
+            "AND r.attributeId = :attributeId " +
+            "AND r.resolution = :resolution " +
+            "AND r.bucketStart >= :start " +
+            "AND r.bucketStart < :end " +
+            "GROUP BY r.attributeId, r.bucketStart " +
+            "ORDER BY r.bucketStart ASC")
+    List<BucketAggregate> findBucketAggregatesInTank(
+            @Param("tankId") Long tankId,
+            @Param("attributeId") Long attributeId,
+            @Param("resolution") RollupResolution resolution,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Per-bucket sums, counts, minimums and maximums of one attribute over all tanks of a room at a given resolution.
+     *
+     * @param roomId The ID of the room.
+     * @param attributeId The ID of the attribute.
+     * @param resolution The rollup resolution to read.
+     * @param start The start of the first bucket.
+     * @param end The end of the range, exclusive.
+     * @return One aggregate per bucket that has at least one value, in chronological order.
+     */
+    @Query("SELECT new com.example.dto.BucketAggregate(r.attributeId, r.bucketStart, SUM(r.valueSum), SUM(r.valueCount), MIN(r.valueMin), MAX(r.valueMax)) " +
+            "FROM AttributeRollup r " +
+            "WHERE r.tankId IN (SELECT t.id FROM Tank t WHERE t.room.id = :roomId) " +
+            "AND r.attributeId = :attributeId " +
+            "AND r.resolution = :resolution " +
+            "AND r.bucketStart >= :start " +
+            "AND r.bucketStart < :end " +
+            "GROUP BY r.attributeId, r.bucketStart " +
+            "ORDER BY r.bucketStart ASC")
+    List<BucketAggregate> findBucketAggregatesInRoom(
+            @Param("roomId") Long roomId,
+            @Param("attributeId") Long attributeId,
+            @Param("resolution") RollupResolution resolution,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Per-bucket sums, counts, minimums and maximums of one attribute over all tanks of a department at a given resolution.
+     *
+     * @param departmentId The ID of the department.
+     * @param attributeId The ID of the attribute.
+     * @param resolution The rollup resolution to read.
+     * @param start The start of the first bucket.
+     * @param end The end of the range, exclusive.
+     * @return One aggregate per bucket that has at least one value, in chronological order.
+     */
+    @Query("SELECT new com.example.dto.BucketAggregate(r.attributeId, r.bucketStart, SUM(r.valueSum), SUM(r.valueCount), MIN(r.valueMin), MAX(r.valueMax)) " +
+            "FROM AttributeRollup r " +
+            "WHERE r.tankId IN (SELECT t.id FROM Tank t WHERE t.room.department.id = :departmentId) " +
+            "AND r.attributeId = :attributeId " +
+            "AND r.resolution = :resolution " +
+            "AND r.bucketStart >= :start " +
+            "AND r.bucketStart < :end " +
+            "GROUP BY r.attributeId, r.bucketStart " +
+            "ORDER BY r.bucketStart ASC")
+    List<BucketAggregate> findBucketAggregatesInDepartment(
+            @Param("departmentId") Long departmentId,
+            @Param("attributeId") Long attributeId,
+            @Param("resolution") RollupResolution resolution,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Combines the daily rollups of a tank between two timestamps, per attribute.
+     * Used to build the weekly and monthly rollups.
+     *
+     * @param tankId The ID of the tank.
+     * @param start The start of the range, inclusive.
+     * @param end The end of the range, exclusive.
+     * @return One aggregate per attribute, without a bucket start.
+     */
+    @Query("SELECT new com.example.dto.BucketAggregate(r.attributeId, SUM(r.valueSum), SUM(r.valueCount), MIN(r.valueMin), MAX(r.valueMax)) " +
+            "FROM AttributeRollup r " +
+            "WHERE r.tankId = :tankId " +
+            "AND r.resolution = com.example.entity.RollupResolution.DAY " +
+            "AND r.bucketStart >= :start " +
+            "AND r.bucketStart < :end " +
+            "GROUP BY r.attributeId")
+    List<BucketAggregate> combineDailyRollupsInTank(
+            @Param("tankId") Long tankId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Deletes the rollups of a tank at the given resolutions whose bucket starts in a range.
+     *
+     * @param tankId The ID of the tank.
+     * @param resolutions The resolutions to delete.
+     * @param start The start of the range, inclusive.
+     * @param end The end of the range, exclusive.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM AttributeRollup r " +
+            "WHERE r.tankId = :tankId " +
+            "AND r.resolution IN :resolutions " +
+            "AND r.bucketStart >= :start " +
+            "AND r.bucketStart < :end")
+    void deleteByTankIdAndBucketStartBetween(
+            @Param("tankId") Long tankId,
+            @Param("resolutions") Collection<RollupResolution> resolutions,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+}
@@ -0,0 +1,131 @@
+package com.example.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.dto.TankPlacement;
+import com.example.dto.TankReading;
+
+import jakarta.persistence.EntityNotFoundException;
+
+/**
+ * Inserts, updates and deletes attribute values with JDBC batches instead of one Hibernate operation per row.
+ * <p>
+ * AttributeValue IDs come from an auto-increment column, which keeps Hibernate from batching its inserts.
+ * Going through JDBC leaves ID generation to the database as before, while the MySQL driver
+ * ({@code rewriteBatchedStatements=true}) turns each batch into multi-row INSERT statements.
+ * Joins the surrounding transaction, if any.
+ */
+@Component
+public class AttributeValueBatchWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO AttributeValue "
+            + "(tank_id, attribute_id, room_id, department_id, timestamp, value) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_VALUE_SQL = "UPDATE AttributeValue SET value = ? WHERE id = ?";
+
+    private static final String DELETE_SQL = "DELETE FROM AttributeValue WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TankRepository tankRepository;
+
+    @Value("${fishhatchery.ingest.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Insert readings, filling in the room and department of their tanks.
+     *
+     * @param readings The readings to insert.
+     * @return The number of rows inserted.
+     * @throws EntityNotFoundException If a reading refers to a tank that does not exist.
+     */
+    public int insert(Collection<TankReading> readings) {
+        if (readings.isEmpty()) {
+            return 0;
+        }
+        Map<Long, TankPlacement> placementsByTankId = findPlacements(readings);
+
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, readings, batchSize, (statement, reading) -> {
+            TankPlacement placement = placementsByTankId.get(reading.tankId());
+            statement.setLong(1, reading.tankId());
+            setNullableLong(statement, 2, reading.attributeId());
+            setNullableLong(statement, 3, placement.roomId());
+            setNullableLong(statement, 4, placement.departmentId());
+            statement.setObject(5, reading.timestamp());
+            statement.setDouble(6, reading.value());
+        });
+
+        // The driver may report rewritten batches as SUCCESS_NO_INFO, in which case every row went in
+        int inserted = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                inserted += count >= 0 ? count : 1;
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * Change the value of existing attribute values.
+     *
+     * @param valuesById The new value of each attribute value, by attribute value ID.
+     */
+    public void updateValues(Map<Long, Double> valuesById) {
+        if (valuesById.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_VALUE_SQL, valuesById.entrySet(), batchSize, (statement, entry) -> {
+            statement.setDouble(1, entry.getValue());
+            statement.setLong(2, entry.getKey());
+        });
+    }
+
+    /**
+     * Delete attribute values by ID.
+     *
+     * @param ids The IDs of the attribute values to delete.
+     */
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(DELETE_SQL, ids, batchSize, (statement, id) -> statement.setLong(1, id));
+    }
+
+    private Map<Long, TankPlacement> findPlacements(Collection<TankReading> readings) {
+        List<Long> tankIds = readings.stream().map(TankReading::tankId).distinct().collect(Collectors.toList());
+        Map<Long, TankPlacement> placementsByTankId = new HashMap<>();
+        for (TankPlacement placement : tankRepository.findPlacementsByIds(tankIds)) {
+            placementsByTankId.put(placement.tankId(), placement);
+        }
+        for (Long tankId : tankIds) {
+            if (!placementsByTankId.containsKey(tankId)) {
+                throw new EntityNotFoundException("Tank not found with ID: " + tankId);
+            }
+        }
+        return placementsByTankId;
+    }
+
+    private static void setNullableLong(PreparedStatement statement, int index, Long value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.BIGINT);
+        } else {
+            statement.setLong(index, value);
+        }
+    }
+}
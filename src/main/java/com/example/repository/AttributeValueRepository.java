@@ -3,13 +3,24 @@ package com.example.repository;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.QueryHint;
+
+import com.example.dto.AttributeReading;
+import com.example.dto.BucketAggregate;
+import com.example.dto.StoredReading;
+import com.example.dto.TankReading;
 import com.example.entity.Attribute;
 import com.example.entity.AttributeValue;
 import com.example.entity.Department;
@@ -19,6 +30,11 @@ import com.example.entity.Tank;
 @Repository
 public interface AttributeValueRepository extends JpaRepository<AttributeValue, Long> {
 
+    /**
+     * Number of rows fetched from the database at a time by the streaming queries.
+     */
+    int STREAM_FETCH_SIZE = 1000;
+
     /**
      * Find attribute values for a specific tank between two dates.
      *
@@ -58,7 +74,7 @@ public interface AttributeValueRepository extends JpaRepository<AttributeValue,
      * @return A list of attribute values for the room and attribute between the specified dates.
      */
     @Query("SELECT av FROM AttributeValue av " +
-            "WHERE av.tank.room = :room " +
+            "WHERE av.roomId = :#{#room.id} " +
             "AND av.attribute = :attribute " +
             "AND av.timestamp BETWEEN :start AND :end " +
             "ORDER BY av.timestamp ASC")
@@ -78,7 +94,7 @@ public interface AttributeValueRepository extends JpaRepository<AttributeValue,
      * @return A list of attribute values for the department and attribute between the specified dates.
      */
     @Query("SELECT av FROM AttributeValue av " +
-            "WHERE av.tank.room.department = :department " +
+            "WHERE av.departmentId = :#{#department.id} " +
             "AND av.attribute = :attribute " +
             "AND av.timestamp BETWEEN :start AND :end " +
             "ORDER BY av.timestamp ASC")
@@ -87,6 +103,134 @@ public interface AttributeValueRepository extends JpaRepository<AttributeValue,
             @Param("attribute") Attribute attribute,
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end);
+
+    /**
+     * Sum, count, minimum and maximum of the values of every attribute of a tank, per attribute and per hour.
+     * Used to build the rollups.
+     *
+     * @param tankId The ID of the tank.
+     * @param start The start of the timestamp range, inclusive.
+     * @param end The end of the timestamp range, exclusive.
+     * @return One aggregate per attribute and hour that has at least one value.
+     */
+    @Query("SELECT new com.example.dto.BucketAggregate(av.attribute.id, CAST(av.timestamp AS LocalDate), EXTRACT(HOUR FROM av.timestamp), " +
+            "SUM(av.value), COUNT(av), MIN(av.value), MAX(av.value)) " +
+            "FROM AttributeValue av " +
+            "WHERE av.tank.id = :tankId " +
+            "AND av.timestamp >= :start " +
+            "AND av.timestamp < :end " +
+            "GROUP BY av.attribute.id, CAST(av.timestamp AS LocalDate), EXTRACT(HOUR FROM av.timestamp)")
+    List<BucketAggregate> findHourlyRollupAggregatesInTank(
+            @Param("tankId") Long tankId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Streams all attribute values of all tanks in a timestamp range, as lightweight readings.
+     * The rows are fetched from the database in batches while the stream is consumed,
+     * so it must be read inside a transaction and closed afterwards.
+     *
+     * @param start The start of the timestamp range, inclusive.
+     * @param end The end of the timestamp range, exclusive.
+     * @return The readings in the range.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.example.dto.TankReading(av.tank.id, av.attribute.id, av.timestamp, av.value) " +
+            "FROM AttributeValue av " +
+            "WHERE av.timestamp >= :start " +
+            "AND av.timestamp < :end")
+    Stream<TankReading> streamReadingsBetween(
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Streams the attribute values of a tank in a timestamp range, as lightweight readings.
+     * The stream must be read inside a transaction and closed afterwards.
+     *
+     * @param tankId The ID of the tank.
+     * @param start The start of the timestamp range, inclusive.
+     * @param end The end of the timestamp range, exclusive.
+     * @return The readings of the tank in the range, in chronological order.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.example.dto.TankReading(av.tank.id, av.attribute.id, av.timestamp, av.value) " +
+            "FROM AttributeValue av " +
+            "WHERE av.tank.id = :tankId " +
+            "AND av.timestamp >= :start " +
+            "AND av.timestamp < :end " +
+            "ORDER BY av.timestamp ASC")
+    Stream<TankReading> streamReadingsInTankBetween(
+            @Param("tankId") Long tankId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Streams the attribute values of all tanks of a room in a timestamp range, as lightweight readings.
+     * The stream must be read inside a transaction and closed afterwards.
+     *
+     * @param roomId The ID of the room.
+     * @param start The start of the timestamp range, inclusive.
+     * @param end The end of the timestamp range, exclusive.
+     * @return The readings of the room in the range, in chronological order.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.example.dto.TankReading(av.tank.id, av.attribute.id, av.timestamp, av.value) " +
+            "FROM AttributeValue av " +
+            "WHERE av.roomId = :roomId " +
+            "AND av.timestamp >= :start " +
+            "AND av.timestamp < :end " +
+            "ORDER BY av.timestamp ASC")
+    Stream<TankReading> streamReadingsInRoomBetween(
+            @Param("roomId") Long roomId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Streams the attribute values of all tanks of a department in a timestamp range, as lightweight readings.
+     * The stream must be read inside a transaction and closed afterwards.
+     *
+     * @param departmentId The ID of the department.
+     * @param start The start of the timestamp range, inclusive.
+     * @param end The end of the timestamp range, exclusive.
+     * @return The readings of the department in the range, in chronological order.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.example.dto.TankReading(av.tank.id, av.attribute.id, av.timestamp, av.value) " +
+            "FROM AttributeValue av " +
+            "WHERE av.departmentId = :departmentId " +
+            "AND av.timestamp >= :start " +
+            "AND av.timestamp < :end " +
+            "ORDER BY av.timestamp ASC")
+    Stream<TankReading> streamReadingsInDepartmentBetween(
+            @Param("departmentId") Long departmentId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Retrieves the timestamp of the oldest attribute value of a tank.
+     *
+     * @param tankId The ID of the tank.
+     * @return The oldest timestamp, or null if the tank has no attribute values.
+     */
+    @Query("SELECT MIN(av.timestamp) FROM AttributeValue av WHERE av.tank.id = :tankId")
+    LocalDateTime findFirstTimestampInTank(@Param("tankId") Long tankId);
+
+    /**
+     * Retrieves the timestamp of the most recent attribute value of a tank.
+     *
+     * @param tankId The ID of the tank.
+     * @return The most recent timestamp, or null if the tank has no attribute values.
+     */
+    @Query("SELECT MAX(av.timestamp) FROM AttributeValue av WHERE av.tank.id = :tankId")
+    LocalDateTime findLastTimestampInTank(@Param("tankId") Long tankId);
     
     /**
      * Retrieves a list of AttributeValues for a specific Tank within a specified timestamp range.
@@ -106,18 +250,128 @@ public interface AttributeValueRepository extends JpaRepository<AttributeValue,
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate
     );
+
+    /**
+     * Retrieves the readings of a tank within a timestamp range, without loading the entities.
+     *
+     * @param tankId    The ID of the tank.
+     * @param startDate The start of the timestamp range.
+     * @param endDate   The end of the timestamp range.
+     * @return The readings that match the criteria, ordered by attribute ID.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT new com.example.dto.AttributeReading(av.attribute.id, av.timestamp, av.value) " +
+            "FROM AttributeValue av " +
+            "WHERE av.tank.id = :tankId " +
+            "AND av.timestamp BETWEEN :startDate AND :endDate " +
+            "ORDER BY av.attribute.id ASC")
+    List<AttributeReading> findReadingsByTankAndTimestampBetween(
+            @Param("tankId") Long tankId,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate);
     
     
     /**
-     * Deletes all attribute values associated with a specific tank and date.
+     * Fills in the room and department copies of attribute values written before those columns existed,
+     * for one range of IDs.
      *
-     * @param tank The tank entity for which attribute values should be deleted.
-     * @param date The specific date (yyyy-MM-dd) on which attribute values should be deleted.
+     * @param fromId The first ID of the range, inclusive.
+     * @param toId The last ID of the range, exclusive.
+     * @return The number of attribute values updated.
      */
     @Modifying
-	@Query("DELETE FROM AttributeValue " +
-			"av WHERE av.tank = :tank " +
-			"AND DATE(av.timestamp) = :date")
-	void deleteAttributeValuesByTankAndDate(@Param("tank") Tank tank, @Param("date") LocalDate date);
+    @Transactional
+    @Query("UPDATE AttributeValue av " +
+            "SET av.roomId = (SELECT t.room.id FROM Tank t WHERE t.id = av.tank.id), " +
+            "av.departmentId = (SELECT r.department.id FROM Tank t JOIN t.room r WHERE t.id = av.tank.id) " +
+            "WHERE av.id >= :fromId " +
+            "AND av.id < :toId " +
+            "AND av.roomId IS NULL")
+    int backfillHierarchyColumns(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * Retrieves the highest attribute value ID.
+     *
+     * @return The highest ID, or null if there are no attribute values.
+     */
+    @Query("SELECT MAX(av.id) FROM AttributeValue av")
+    Long findMaxId();
+    
+    /**
+     * Retrieves the readings of a tank within a half-open timestamp range, with their row IDs.
+     *
+     * @param tankId The ID of the tank.
+     * @param start  The start of the range, inclusive.
+     * @param end    The end of the range, exclusive.
+     * @return The stored readings in the range.
+     */
+    @Query("SELECT new com.example.dto.StoredReading(av.id, av.attribute.id, av.timestamp, av.value) " +
+            "FROM AttributeValue av " +
+            "WHERE av.tank.id = :tankId " +
+            "AND av.timestamp >= :start AND av.timestamp < :end")
+    List<StoredReading> findStoredReadingsInTankBetween(
+            @Param("tankId") Long tankId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
+    );
 
-}
\ No newline at end of file
+    /**
+     * Retrieves a page of the readings of a tank between two timestamps, in attribute, timestamp and ID order,
+     * continuing after a given reading. Seeks along the tank's index instead of skipping rows, so every page
+     * costs the same.
+     *
+     * @param tankId           The ID of the tank.
+     * @param startDate        The start of the timestamp range.
+     * @param endDate          The end of the timestamp range.
+     * @param afterAttributeId The attribute ID of the last reading of the previous page, or 0 for the first page.
+     * @param afterTimestamp   The timestamp of the last reading of the previous page.
+     * @param afterId          The ID of the last reading of the previous page.
+     * @param pageable         The number of readings to retrieve.
+     * @return The stored readings of the page.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT new com.example.dto.StoredReading(av.id, av.attribute.id, av.timestamp, av.value) " +
+            "FROM AttributeValue av " +
+            "WHERE av.tank.id = :tankId " +
+            "AND av.timestamp BETWEEN :startDate AND :endDate " +
+            "AND av.attribute.id >= :afterAttributeId " +
+            "AND (av.attribute.id > :afterAttributeId OR av.timestamp > :afterTimestamp " +
+            "OR (av.timestamp = :afterTimestamp AND av.id > :afterId)) " +
+            "ORDER BY av.attribute.id, av.timestamp, av.id")
+    List<StoredReading> findReadingsPageByTankAndTimestampBetween(
+            @Param("tankId") Long tankId,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("afterAttributeId") Long afterAttributeId,
+            @Param("afterTimestamp") LocalDateTime afterTimestamp,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    /**
+     * Retrieves a page of the readings of one attribute of a tank, in timestamp and ID order, continuing after
+     * a given reading. Seeks along the tank and attribute index instead of skipping rows, so every page costs the same.
+     *
+     * @param tankId         The ID of the tank.
+     * @param attributeId    The ID of the attribute.
+     * @param afterTimestamp The timestamp of the last reading of the previous page, or the start of the range.
+     * @param afterId        The ID of the last reading of the previous page, or 0 for the first page.
+     * @param end            The end of the range, exclusive.
+     * @param pageable       The number of readings to retrieve.
+     * @return The stored readings of the page.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT new com.example.dto.StoredReading(av.id, av.attribute.id, av.timestamp, av.value) " +
+            "FROM AttributeValue av " +
+            "WHERE av.tank.id = :tankId " +
+            "AND av.attribute.id = :attributeId " +
+            "AND av.timestamp >= :afterTimestamp AND av.timestamp < :end " +
+            "AND (av.timestamp > :afterTimestamp OR av.id > :afterId) " +
+            "ORDER BY av.timestamp, av.id")
+    List<StoredReading> findReadingsPageInTank(
+            @Param("tankId") Long tankId,
+            @Param("attributeId") Long attributeId,
+            @Param("afterTimestamp") LocalDateTime afterTimestamp,
+            @Param("afterId") Long afterId,
+            @Param("end") LocalDateTime end,
+            Pageable pageable);
+}
@@ -1,11 +1,22 @@
 package com.example.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import com.example.dto.NamedId;
 import com.example.entity.Department;
 
 @Repository
 public interface DepartmentRepository extends JpaRepository<Department, Long> {
 
+    /**
+     * Retrieves the ID and name of all departments, without loading their rooms.
+     *
+     * @return The ID and name of every department, in ascending ID order.
+     */
+    @Query("SELECT new com.example.dto.NamedId(d.id, d.name) FROM Department d ORDER BY d.id")
+    List<NamedId> findAllNamedIds();
 }
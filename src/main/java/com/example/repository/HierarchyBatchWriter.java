@@ -0,0 +1,126 @@
+package com.example.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.dto.TankPlacement;
+
+/**
+ * Renames, moves and deletes departments, rooms and tanks with JDBC batches and set-based statements,
+ * so reconciling a whole hierarchy costs a fixed number of round trips instead of a few per node.
+ * Bypasses the entity cascades, which would load every attribute value of a deleted subtree.
+ * Joins the surrounding transaction, if any.
+ */
+@Component
+public class HierarchyBatchWriter {
+
+    // Keeps IN lists well below the limits of the database and driver
+    private static final int MAX_IDS_PER_STATEMENT = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Value("${fishhatchery.ingest.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Rename departments, rooms or tanks.
+     *
+     * @param table     The table: Department, Room or Tank.
+     * @param namesById The new name of each entity, by ID.
+     */
+    public void rename(String table, Map<Long, String> namesById) {
+        if (namesById.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("UPDATE " + table + " SET name = ? WHERE id = ?", namesById.entrySet(), batchSize, (statement, entry) -> {
+            statement.setString(1, entry.getValue());
+            statement.setLong(2, entry.getKey());
+        });
+    }
+
+    /**
+     * Move rooms to other departments, along with the department copies on their attribute values.
+     *
+     * @param departmentIdsByRoomId The new department of each room, by room ID.
+     */
+    public void moveRooms(Map<Long, Long> departmentIdsByRoomId) {
+        if (departmentIdsByRoomId.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("UPDATE Room SET department_id = ? WHERE id = ?", departmentIdsByRoomId.entrySet(), batchSize, (statement, entry) -> {
+            statement.setLong(1, entry.getValue());
+            statement.setLong(2, entry.getKey());
+        });
+        jdbcTemplate.batchUpdate("UPDATE AttributeValue SET department_id = ? WHERE room_id = ?", departmentIdsByRoomId.entrySet(), batchSize, (statement, entry) -> {
+            statement.setLong(1, entry.getValue());
+            statement.setLong(2, entry.getKey());
+        });
+    }
+
+    /**
+     * Move tanks to other rooms, along with the room and department copies on their attribute values.
+     * Rooms that moved as well must have been moved first.
+     *
+     * @param placements The new room and department of each tank that moved.
+     */
+    public void moveTanks(Collection<TankPlacement> placements) {
+        if (placements.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("UPDATE Tank SET room_id = ? WHERE id = ?", placements, batchSize, (statement, placement) -> {
+            statement.setLong(1, placement.roomId());
+            statement.setLong(2, placement.tankId());
+        });
+        jdbcTemplate.batchUpdate("UPDATE AttributeValue SET room_id = ?, department_id = ? WHERE tank_id = ?", placements, batchSize, (statement, placement) -> {
+            statement.setLong(1, placement.roomId());
+            statement.setLong(2, placement.departmentId());
+            statement.setLong(3, placement.tankId());
+        });
+    }
+
+    /**
+     * Delete rows by ID, a bounded number of IDs per statement.
+     *
+     * @param table    The table.
+     * @param idColumn The column holding the IDs.
+     * @param ids      The IDs of the rows to delete.
+     * @return The number of rows deleted.
+     */
+    public int deleteByIds(String table, String idColumn, Collection<Long> ids) {
+        int deleted = 0;
+        List<Long> remaining = new ArrayList<>(ids);
+        for (int from = 0; from < remaining.size(); from += MAX_IDS_PER_STATEMENT) {
+            List<Long> chunk = remaining.subList(from, Math.min(from + MAX_IDS_PER_STATEMENT, remaining.size()));
+            deleted += namedParameterJdbcTemplate.update("DELETE FROM " + table + " WHERE " + idColumn + " IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk));
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete a bounded number of the rows of a deleted tank, for purges that must not hold locks for long.
+     * The rows are picked through the tank's index and deleted by primary key.
+     *
+     * @param table  The table: AttributeValue or AttributeRollup.
+     * @param tankId The ID of the tank.
+     * @param limit  The largest number of rows to delete.
+     * @return The number of rows deleted; fewer than the limit once none are left.
+     */
+    public int deleteChunkOfTank(String table, Long tankId, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE tank_id = ? LIMIT ?", Long.class, tankId, limit);
+        return deleteByIds(table, "id", ids);
+    }
+}
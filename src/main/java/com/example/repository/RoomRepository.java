@@ -1,11 +1,33 @@
 package com.example.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.example.dto.HierarchyEntry;
 import com.example.entity.Room;
 
 @Repository
 public interface RoomRepository extends JpaRepository<Room, Long> {
 
+    /**
+     * Retrieves the ID, name and department ID of all rooms, without loading their tanks.
+     *
+     * @return One entry per room, in ascending ID order; the parent ID is null for rooms without a department.
+     */
+    @Query("SELECT new com.example.dto.HierarchyEntry(r.id, r.name, d.id) " +
+            "FROM Room r LEFT JOIN r.department d ORDER BY r.id")
+    List<HierarchyEntry> findAllHierarchyEntries();
+
+    /**
+     * Retrieves the IDs of the rooms of a department.
+     *
+     * @param departmentId The ID of the department.
+     * @return The IDs of the department's rooms.
+     */
+    @Query("SELECT r.id FROM Room r WHERE r.department.id = :departmentId")
+    List<Long> findIdsByDepartmentId(@Param("departmentId") Long departmentId);
 }
@@ -0,0 +1,57 @@
+package com.example.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.entity.TankPurge;
+
+@Repository
+public interface TankPurgeRepository extends JpaRepository<TankPurge, Long> {
+
+    /**
+     * Retrieves the purges that have not finished yet.
+     *
+     * @return The running purges, oldest first.
+     */
+    @Query("SELECT p FROM TankPurge p WHERE p.finishedAt IS NULL ORDER BY p.id")
+    List<TankPurge> findUnfinished();
+
+    /**
+     * Retrieves the most recent purges, running or finished.
+     *
+     * @param pageable The number of purges to retrieve.
+     * @return The purges, newest first.
+     */
+    @Query("SELECT p FROM TankPurge p ORDER BY p.id DESC")
+    List<TankPurge> findRecent(Pageable pageable);
+
+    /**
+     * Adds the rows deleted by one chunk to the progress of a purge.
+     *
+     * @param id       The ID of the purge.
+     * @param readings The number of attribute values deleted.
+     * @param rollups  The number of rollups deleted.
+     */
+    @Modifying
+    @Query("UPDATE TankPurge p " +
+            "SET p.readingsDeleted = p.readingsDeleted + :readings, p.rollupsDeleted = p.rollupsDeleted + :rollups " +
+            "WHERE p.id = :id")
+    void addProgress(@Param("id") Long id, @Param("readings") long readings, @Param("rollups") long rollups);
+
+    /**
+     * Marks a purge as finished.
+     *
+     * @param id         The ID of the purge.
+     * @param finishedAt The time the last rows were deleted.
+     */
+    @Modifying
+    @Query("UPDATE TankPurge p SET p.finishedAt = :finishedAt WHERE p.id = :id")
+    void finish(@Param("id") Long id, @Param("finishedAt") LocalDateTime finishedAt);
+}
@@ -1,13 +1,88 @@
 package com.example.repository;
 
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.example.dto.HierarchyEntry;
+import com.example.dto.NamedId;
+import com.example.dto.TankPlacement;
 import com.example.entity.Tank;
 
+import jakarta.persistence.LockModeType;
+
 @Repository
 public interface TankRepository extends JpaRepository<Tank, Long>{
 
-	
+    /**
+     * Retrieves a tank and locks its row until the end of the transaction, so writes to the tank that depend
+     * on its current readings run one after the other.
+     *
+     * @param id The ID of the tank.
+     * @return The tank, or empty if there is none with this ID.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Tank t WHERE t.id = :id")
+    Optional<Tank> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Retrieves the IDs of all tanks, without loading the tanks themselves.
+     *
+     * @return The IDs of all tanks, in ascending order.
+     */
+    @Query("SELECT t.id FROM Tank t ORDER BY t.id")
+    List<Long> findAllIds();
+
+    /**
+     * Retrieves the ID and name of all tanks, without loading the tanks themselves.
+     *
+     * @return The ID and name of every tank.
+     */
+    @Query("SELECT new com.example.dto.NamedId(t.id, t.name) FROM Tank t")
+    List<NamedId> findAllNamedIds();
+
+    /**
+     * Retrieves the ID, name and room ID of all tanks, without loading their attribute values.
+     *
+     * @return One entry per tank, in ascending ID order; the parent ID is null for tanks without a room.
+     */
+    @Query("SELECT new com.example.dto.HierarchyEntry(t.id, t.name, r.id) " +
+            "FROM Tank t LEFT JOIN t.room r ORDER BY t.id")
+    List<HierarchyEntry> findAllHierarchyEntries();
+
+    /**
+     * Retrieves the IDs of the tanks of a room.
+     *
+     * @param roomId The ID of the room.
+     * @return The IDs of the room's tanks.
+     */
+    @Query("SELECT t.id FROM Tank t WHERE t.room.id = :roomId")
+    List<Long> findIdsByRoomId(@Param("roomId") Long roomId);
+
+    /**
+     * Retrieves the IDs of the tanks of all rooms of a department.
+     *
+     * @param departmentId The ID of the department.
+     * @return The IDs of the department's tanks.
+     */
+    @Query("SELECT t.id FROM Tank t WHERE t.room.department.id = :departmentId")
+    List<Long> findIdsByDepartmentId(@Param("departmentId") Long departmentId);
+
+    /**
+     * Retrieves the room and department of a set of tanks, without loading the entities.
+     *
+     * @param tankIds The IDs of the tanks.
+     * @return The placement of each tank that exists.
+     */
+    @Query("SELECT new com.example.dto.TankPlacement(t.id, r.id, d.id) " +
+            "FROM Tank t LEFT JOIN t.room r LEFT JOIN r.department d " +
+            "WHERE t.id IN :tankIds")
+    List<TankPlacement> findPlacementsByIds(@Param("tankIds") Collection<Long> tankIds);
 }
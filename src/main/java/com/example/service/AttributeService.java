@@ -5,6 +5,7 @@ import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.example.cache.AttributeCatalogue;
 import com.example.entity.Attribute;
 import com.example.repository.AttributeRepository;
 
@@ -13,20 +14,30 @@ public class AttributeService {
 	
     @Autowired
     private AttributeRepository attributeRepository;
+    
+    @Autowired
+    private AttributeCatalogue attributeCatalogue;
 
     public List<Attribute> getAllAttributes() {
-        return attributeRepository.findAll();
+        return attributeCatalogue.getAll();
     }
 
     public Attribute getAttributeById(Long id) {
-        return attributeRepository.findById(id).orElse(null);
+        return attributeCatalogue.getById(id);
+    }
+
+    public Attribute getAttributeByName(String name) {
+        return attributeCatalogue.getByName(name);
     }
 
     public Attribute saveAttribute(Attribute attribute) {
-        return attributeRepository.save(attribute);
+        Attribute savedAttribute = attributeRepository.save(attribute);
+        attributeCatalogue.invalidate();
+        return savedAttribute;
     }
 
     public void deleteAttribute(Long id) {
         attributeRepository.deleteById(id);
+        attributeCatalogue.invalidate();
     }
 }
\ No newline at end of file
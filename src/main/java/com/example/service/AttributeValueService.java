@@ -2,82 +2,288 @@ package com.example.service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.EntityNotFoundException;
+
+import com.example.analytics.AnalyticsExecutor;
+import com.example.analytics.AnalyticsUnavailableException;
+import com.example.analytics.DailyAggregator;
+import com.example.cache.AttributeCatalogue;
+import com.example.cache.DailyAverageCache;
+import com.example.cache.DailyAverageCache.Scope;
+import com.example.cache.HierarchySnapshot;
+import com.example.cache.HierarchyStore;
+import com.example.cache.HotWindowStore;
+import com.example.dto.AttributeReading;
+import com.example.dto.CursorPage;
+import com.example.dto.DailyAverageBatchRequest;
+import com.example.dto.DepartmentNode;
+import com.example.dto.PageCursor;
+import com.example.dto.ReadingRequest;
+import com.example.dto.RoomNode;
+import com.example.dto.ScopeDailyAverages;
+import com.example.dto.StoredReading;
+import com.example.dto.TankDailyAggregate;
+import com.example.dto.TankNode;
+import com.example.dto.TankReading;
+import com.example.dto.BucketAggregate;
 import com.example.entity.Attribute;
 import com.example.entity.AttributeValue;
 import com.example.entity.Department;
 import com.example.entity.Room;
+import com.example.entity.RollupResolution;
 import com.example.entity.Tank;
+import com.example.repository.AttributeValueBatchWriter;
 import com.example.repository.AttributeValueRepository;
+import com.example.repository.AttributeRollupRepository;
+import com.example.repository.TankRepository;
 
 @Service
 public class AttributeValueService {
+    
+    private static final long HIERARCHY_BACKFILL_CHUNK_SIZE = 50_000;
+    
+    // Keeps IN lists of the batch analytics queries well below the limits of the database and driver
+    private static final int MAX_TANKS_PER_QUERY = 1000;
+    
     @Autowired
     private AttributeValueRepository attributeValueRepository;
     
+    @Autowired
+    private AttributeRollupRepository attributeRollupRepository;
+    
     @Autowired
     private AttributeService attributeService;
     
+    @Autowired
+    private RollupService rollupService;
+    
+    @Autowired
+    private TankRepository tankRepository;
+    
+    @Autowired
+    private HotWindowStore hotWindowStore;
+
+    @Autowired
+    private DailyAverageCache dailyAverageCache;
+    
+    @Autowired
+    private AttributeValueBatchWriter attributeValueBatchWriter;
+    
+    @Autowired
+    private AttributeCatalogue attributeCatalogue;
+    
+    @Autowired
+    private PageLimits pageLimits;
+    
+    @Autowired
+    private HierarchyStore hierarchyStore;
+    
+    @Autowired
+    private AnalyticsExecutor analyticsExecutor;
+    
+    @Autowired
+    private ReadingPartitionService readingPartitionService;
+    
+    @Value("${fishhatchery.analytics.batch-max-series:200}")
+    private int batchMaxSeries;
+    
     public Optional<AttributeValue> getById(Long id) {
         return attributeValueRepository.findById(id);
     }
     
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public AttributeValue saveAttributeValue(AttributeValue attributeValue) {
-        return attributeValueRepository.save(attributeValue);
+        AttributeValue savedAttributeValue = attributeValueRepository.save(attributeValue);
+        rollupService.refreshRollups(List.of(savedAttributeValue));
+        return savedAttributeValue;
     }
     
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public List<AttributeValue> saveAttributeValues(List<AttributeValue> attributeValues) {
-        return attributeValueRepository.saveAll(attributeValues);
+        List<AttributeValue> savedAttributeValues = attributeValueRepository.saveAll(attributeValues);
+        rollupService.refreshRollups(savedAttributeValues);
+        return savedAttributeValues;
     }
     
-    public List<AttributeValue> getByTankAndDateRange(Tank tank, LocalDateTime startDate, LocalDateTime endDate) {
-        return attributeValueRepository.findByTankAndTimestampBetween(tank, startDate, endDate);
+    /**
+     * Insert readings through JDBC batches, without creating entities.
+     * Tanks are resolved in one query and the rollups of every touched tank and day are refreshed.
+     *
+     * @param readingRequests The readings to insert, each naming its tank and attribute.
+     * @return The number of readings inserted.
+     * @throws IllegalArgumentException If a reading has no tank, attribute or timestamp, or is older than the retention.
+     * @throws EntityNotFoundException If a reading refers to a tank or attribute that does not exist.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public int saveReadings(List<ReadingRequest> readingRequests) {
+        return saveReadings(toReadings(readingRequests));
     }
-
     
     /**
-     * Calculate daily average values from a list of attribute values.
+     * Insert readings through JDBC batches and refresh the rollups of every touched tank and day.
      *
-     * @param attributeValues A list of attribute values.
-     * @return A map containing daily average values.
+     * @param readings The readings to insert.
+     * @return The number of readings inserted.
+     * @throws IllegalArgumentException If a reading is older than the retention.
+     * @throws EntityNotFoundException If a reading refers to a tank that does not exist.
      */
-    private Map<LocalDate, Double> calculateDailyAverages(List<AttributeValue> attributeValues) {
-        // Initialize maps to store daily sums and counts
-        Map<LocalDate, Double> dailySums = new HashMap<>();
-        Map<LocalDate, Integer> dailyCounts = new HashMap<>();
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public int saveReadings(Collection<TankReading> readings) {
+        Map<Long, Set<LocalDate>> daysByTankId = new TreeMap<>();
+        for (TankReading reading : readings) {
+            daysByTankId.computeIfAbsent(reading.tankId(), id -> new TreeSet<>()).add(reading.timestamp().toLocalDate());
+        }
 
-        // Iterate through the attribute values
-        for (AttributeValue attrValue : attributeValues) {
-            LocalDate date = attrValue.getTimestamp().toLocalDate();
-            double value = attrValue.getValue();
+        int inserted = attributeValueBatchWriter.insert(readings);
+        daysByTankId.forEach(rollupService::refreshRollups);
+        return inserted;
+    }
+    
+    /**
+     * Check reading requests for completeness and known attributes, and turn them into readings.
+     *
+     * @param readingRequests The requests, each naming its tank and attribute.
+     * @return One reading per request, in the same order.
+     * @throws IllegalArgumentException If a request has no tank, attribute or timestamp, or is older than the retention.
+     * @throws EntityNotFoundException If a request names an unknown attribute.
+     */
+    public List<TankReading> toReadings(List<ReadingRequest> readingRequests) {
+        List<TankReading> readings = new ArrayList<>(readingRequests.size());
+        Set<Long> attributeIds = new HashSet<>();
+        Set<LocalDate> days = new HashSet<>();
+        for (ReadingRequest request : readingRequests) {
+            if (request.getTankId() == null || request.getAttributeId() == null || request.getTimestamp() == null) {
+                throw new IllegalArgumentException("Every reading needs a tankId, an attributeId and a timestamp");
+            }
+            readings.add(new TankReading(request.getTankId(), request.getAttributeId(), request.getTimestamp(), request.getValue()));
+            attributeIds.add(request.getAttributeId());
+            days.add(request.getTimestamp().toLocalDate());
+        }
+        readingPartitionService.requireRetained(days);
+        attributeCatalogue.requireAll(attributeIds);
+        return readings;
+    }
+    
+    /**
+     * Get the readings of a tank between two timestamps, ordered by attribute.
+     *
+     * @param tankId    The ID of the tank.
+     * @param startDate The start of the timestamp range.
+     * @param endDate   The end of the timestamp range.
+     * @return The readings of the tank, without their entities.
+     */
+    public List<AttributeReading> getByTankAndDateRange(Long tankId, LocalDateTime startDate, LocalDateTime endDate) {
+        return attributeValueRepository.findReadingsByTankAndTimestampBetween(tankId, startDate, endDate);
+    }
 
-            // Accumulate the sum of attribute values for each day
-            dailySums.merge(date, value, Double::sum);
+    /**
+     * Get a page of the readings of a tank between two timestamps, ordered by attribute, then timestamp.
+     *
+     * @param tankId    The ID of the tank.
+     * @param startDate The start of the timestamp range.
+     * @param endDate   The end of the timestamp range.
+     * @param cursor    The next cursor of the previous page, or null for the first page.
+     * @param limit     The largest number of readings on the page, or null for the default page size.
+     * @return The page of readings.
+     * @throws IllegalArgumentException If the cursor or the limit is not valid.
+     */
+    public CursorPage<AttributeReading> getByTankAndDateRange(Long tankId, LocalDateTime startDate, LocalDateTime endDate, String cursor, Integer limit) {
+        int pageSize = pageLimits.resolve(limit);
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : new PageCursor(0L, startDate, 0L);
+        if (after.attributeId() == null || after.timestamp() == null) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return toReadingPage(attributeValueRepository.findReadingsPageByTankAndTimestampBetween(
+                tankId, startDate, endDate, after.attributeId(), after.timestamp(), after.id(), PageRequest.of(0, pageSize + 1)), pageSize);
+    }
 
-            // Increment the count of attribute values for each day
-            dailyCounts.merge(date, 1, Integer::sum);
+    /**
+     * Get a page of the raw readings of one attribute of a tank, in chronological order.
+     *
+     * @param tankId      The ID of the tank.
+     * @param attributeId The ID of the attribute.
+     * @param start       The start of the time range, inclusive.
+     * @param end         The end of the time range, exclusive.
+     * @param cursor      The next cursor of the previous page, or null for the first page.
+     * @param limit       The largest number of readings on the page, or null for the default page size.
+     * @return The page of readings.
+     * @throws IllegalArgumentException If the cursor or the limit is not valid.
+     */
+    public CursorPage<AttributeReading> getReadingsPage(Long tankId, Long attributeId, LocalDateTime start, LocalDateTime end, String cursor, Integer limit) {
+        int pageSize = pageLimits.resolve(limit);
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+        if (after != null && after.timestamp() == null) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (after == null || after.timestamp().isBefore(start)) {
+            after = new PageCursor(attributeId, start, 0L);
         }
+        return toReadingPage(attributeValueRepository.findReadingsPageInTank(
+                tankId, attributeId, after.timestamp(), after.id(), end, PageRequest.of(0, pageSize + 1)), pageSize);
+    }
 
-        // Calculate daily averages based on sums and counts
-        Map<LocalDate, Double> dailyAverages = new HashMap<>();
-        for (Map.Entry<LocalDate, Double> entry : dailySums.entrySet()) {
-            LocalDate date = entry.getKey();
-            double sum = entry.getValue();
-            int count = dailyCounts.get(date);
+    private static CursorPage<AttributeReading> toReadingPage(List<StoredReading> readings, int pageSize) {
+        CursorPage<StoredReading> page = CursorPage.of(readings, pageSize,
+                reading -> new PageCursor(reading.attributeId(), reading.timestamp(), reading.id()));
+        List<AttributeReading> items = new ArrayList<>(page.items().size());
+        for (StoredReading reading : page.items()) {
+            items.add(new AttributeReading(reading.attributeId(), reading.timestamp(), reading.value()));
+        }
+        return new CursorPage<>(items, page.nextCursor());
+    }
 
-            // Calculate and store the daily average
-            dailyAverages.put(date, sum / count);
+    
+    /**
+     * Fills in the room and department columns of attribute values written before they existed.
+     * Works through the table in ID ranges, each range in its own transaction.
+     *
+     * @return The number of attribute values updated.
+     */
+    public long backfillHierarchyColumns() {
+        Long maxId = attributeValueRepository.findMaxId();
+        long updated = 0;
+        if (maxId == null) {
+            return updated;
         }
+        for (long fromId = 0; fromId <= maxId; fromId += HIERARCHY_BACKFILL_CHUNK_SIZE) {
+            updated += attributeValueRepository.backfillHierarchyColumns(fromId, fromId + HIERARCHY_BACKFILL_CHUNK_SIZE);
+        }
+        return updated;
+    }
 
-        return dailyAverages;
+    
+    /**
+     * Read the daily averages out of an aggregator.
+     *
+     * @param aggregator The daily values of one attribute, or null if it has none.
+     * @return A map containing daily average values, in date order.
+     */
+    private Map<LocalDate, Double> calculateDailyAverages(DailyAggregator aggregator) {
+        if (aggregator == null) {
+            return new LinkedHashMap<>();
+        }
+        return aggregator.toMap(DailyAggregator.Statistic.MEAN);
     }
 
     
@@ -91,12 +297,14 @@ public class AttributeValueService {
      * @return A map containing daily average attribute values for the tank.
      */
     public Map<LocalDate, Double> getDailyAverageAttributeValuesInTankBetweenDates(Tank tank, Attribute attribute, LocalDate startDate, LocalDate endDate) {
-    	LocalDateTime startOfDay = startDate.atStartOfDay();
-        LocalDateTime endOfDay = endDate.atTime(LocalTime.MAX);
-        
-        List<AttributeValue> attributeValues = attributeValueRepository.findAttributeValuesInTankBetweenDates(tank, attribute, startOfDay, endOfDay);
-        
-        return calculateDailyAverages(attributeValues);
+        return dailyAverageCache.getDailyAverages(Scope.TANK, tank.getId(), attribute.getId(), startDate, endDate, () -> {
+            // Recent ranges are served from memory, older ones from the daily rollups.
+            Map<Long, DailyAggregator> aggregators = hotWindowStore.covers(startDate)
+                    ? hotWindowStore.aggregateDaily(List.of(tank.getId()), attribute.getId(), startDate, endDate)
+                    : DailyAggregator.byAttribute(attributeRollupRepository.findDailyAggregatesInTank(tank.getId(), attribute.getId(), startDate.atStartOfDay(), endDate.atStartOfDay()), startDate, endDate);
+
+            return calculateDailyAverages(aggregators.get(attribute.getId()));
+        });
     } 
     
     
@@ -112,29 +320,14 @@ public class AttributeValueService {
             Tank tank,
             LocalDate startDate,
             LocalDate endDate) {
-        // Calculate the start and end timestamps for the specified dates.
-        LocalDateTime startOfDay = startDate.atStartOfDay();
-        LocalDateTime endOfDay = endDate.atTime(LocalTime.MAX);
-
-        // Initialize a map to store daily averages for each attribute.
-        Map<String, Map<LocalDate, Double>> dailyAveragesByAttribute = new HashMap<>();
+        return dailyAverageCache.getDailyAveragesByAttribute(Scope.TANK, tank.getId(), startDate, endDate, () -> {
+            // Aggregate every attribute of the tank in one pass, from memory or from the daily rollups.
+            Map<Long, DailyAggregator> aggregators = hotWindowStore.covers(startDate)
+                    ? hotWindowStore.aggregateDaily(List.of(tank.getId()), null, startDate, endDate)
+                    : DailyAggregator.byAttribute(attributeRollupRepository.findDailyAggregatesInTank(tank.getId(), startDate.atStartOfDay(), endDate.atStartOfDay()), startDate, endDate);
 
-        // Retrieve a list of all attributes.
-        List<Attribute> attributes = attributeService.getAllAttributes(); // You should have a method to get all attributes
-
-        // Iterate through each attribute and calculate daily averages.
-        for (Attribute attribute : attributes) {
-            // Retrieve attribute values for the specified tank and date range.
-            List<AttributeValue> attributeValues = attributeValueRepository.findAttributeValuesInTankBetweenDates(tank, attribute, startOfDay, endOfDay);
-
-            // Calculate daily averages for the current attribute.
-            Map<LocalDate, Double> dailyAverages = calculateDailyAverages(attributeValues);
-
-            // Store the daily averages in the map using the attribute name as the key.
-            dailyAveragesByAttribute.put(attribute.getName(), dailyAverages);
-        }
-
-        return dailyAveragesByAttribute;
+            return calculateDailyAveragesByAttribute(aggregators);
+        });
     }
 
     
@@ -148,12 +341,14 @@ public class AttributeValueService {
      * @return A map containing daily average attribute values for the room.
      */
     public Map<LocalDate, Double> getDailyAverageAttributeValuesInRoomBetweenDates(Room room, Attribute attribute, LocalDate startDate, LocalDate endDate) {
-        LocalDateTime startOfDay = startDate.atStartOfDay();
-        LocalDateTime endOfDay = endDate.atTime(LocalTime.MAX);
-        
-        List<AttributeValue> attributeValues = attributeValueRepository.findAttributeValuesInRoomBetweenDates(room, attribute, startOfDay, endOfDay);
-        
-        return calculateDailyAverages(attributeValues);
+        return dailyAverageCache.getDailyAverages(Scope.ROOM, room.getId(), attribute.getId(), startDate, endDate, () -> {
+            // Recent ranges are served from memory, older ones from the daily rollups.
+            Map<Long, DailyAggregator> aggregators = hotWindowStore.covers(startDate)
+                    ? hotWindowStore.aggregateDaily(tankRepository.findIdsByRoomId(room.getId()), attribute.getId(), startDate, endDate)
+                    : DailyAggregator.byAttribute(attributeRollupRepository.findDailyAggregatesInRoom(room.getId(), attribute.getId(), startDate.atStartOfDay(), endDate.atStartOfDay()), startDate, endDate);
+
+            return calculateDailyAverages(aggregators.get(attribute.getId()));
+        });
     }
 
     
@@ -169,29 +364,14 @@ public class AttributeValueService {
             Room room,
             LocalDate startDate,
             LocalDate endDate) {
-        // Calculate the start and end timestamps for the specified dates.
-        LocalDateTime startOfDay = startDate.atStartOfDay();
-        LocalDateTime endOfDay = endDate.atTime(LocalTime.MAX);
-
-        // Initialize a map to store daily averages for each attribute.
-        Map<String, Map<LocalDate, Double>> dailyAveragesByAttribute = new HashMap<>();
+        return dailyAverageCache.getDailyAveragesByAttribute(Scope.ROOM, room.getId(), startDate, endDate, () -> {
+            // Aggregate every attribute of the room in one pass, from memory or from the daily rollups.
+            Map<Long, DailyAggregator> aggregators = hotWindowStore.covers(startDate)
+                    ? hotWindowStore.aggregateDaily(tankRepository.findIdsByRoomId(room.getId()), null, startDate, endDate)
+                    : DailyAggregator.byAttribute(attributeRollupRepository.findDailyAggregatesInRoom(room.getId(), startDate.atStartOfDay(), endDate.atStartOfDay()), startDate, endDate);
 
-        // Retrieve a list of all attributes.
-        List<Attribute> attributes = attributeService.getAllAttributes(); // You should have a method to get all attributes
-
-        // Iterate through each attribute and calculate daily averages.
-        for (Attribute attribute : attributes) {
-            // Retrieve attribute values for the specified room and date range.
-            List<AttributeValue> attributeValues = attributeValueRepository.findAttributeValuesInRoomBetweenDates(room, attribute, startOfDay, endOfDay);
-            
-            // Calculate daily averages for the current attribute.
-            Map<LocalDate, Double> dailyAverages = calculateDailyAverages(attributeValues);
-            
-            // Store the daily averages in the map using the attribute name as the key.
-            dailyAveragesByAttribute.put(attribute.getName(), dailyAverages);
-        }
-
-        return dailyAveragesByAttribute;
+            return calculateDailyAveragesByAttribute(aggregators);
+        });
     }
 
     
@@ -203,14 +383,14 @@ public class AttributeValueService {
      * @param startDate The start date of the time range.
      * @param endDate The end date of the time range.
      * @return A map containing daily average attribute values for the department.
+     * @throws AnalyticsUnavailableException If the rooms were not all aggregated before the deadline.
      */
     public Map<LocalDate, Double> getDailyAverageAttributeValuesInDepartmentBetweenDates(Department department, Attribute attribute, LocalDate startDate, LocalDate endDate) {
-        LocalDateTime startOfDay = startDate.atStartOfDay();
-        LocalDateTime endOfDay = endDate.atTime(LocalTime.MAX);
-        
-        List<AttributeValue> attributeValues = attributeValueRepository.findAttributeValuesInDepartmentBetweenDates(department, attribute, startOfDay, endOfDay);
-        
-        return calculateDailyAverages(attributeValues);
+        return dailyAverageCache.getDailyAverages(Scope.DEPARTMENT, department.getId(), attribute.getId(), startDate, endDate, () -> {
+            Map<Long, DailyAggregator> aggregators = aggregateDailyInDepartment(department, attribute.getId(), startDate, endDate);
+
+            return calculateDailyAverages(aggregators.get(attribute.getId()));
+        });
     }
     
     
@@ -221,37 +401,297 @@ public class AttributeValueService {
      * @param startDate  The start date of the calculation period.
      * @param endDate    The end date of the calculation period.
      * @return A map containing daily average values for each attribute, where attribute names are keys.
+     * @throws AnalyticsUnavailableException If the rooms were not all aggregated before the deadline.
      */
     public Map<String, Map<LocalDate, Double>> getDailyAverageAllAttributesInDepartmentBetweenDates(
             Department department,
             LocalDate startDate,
             LocalDate endDate) {
-        // Calculate the start and end timestamps for the specified dates.
-        LocalDateTime startOfDay = startDate.atStartOfDay();
-        LocalDateTime endOfDay = endDate.atTime(LocalTime.MAX);
+        return dailyAverageCache.getDailyAveragesByAttribute(Scope.DEPARTMENT, department.getId(), startDate, endDate, () -> {
+            Map<Long, DailyAggregator> aggregators = aggregateDailyInDepartment(department, null, startDate, endDate);
 
-        // Initialize a map to store daily averages for each attribute.
-        Map<String, Map<LocalDate, Double>> dailyAveragesByAttribute = new HashMap<>();
+            return calculateDailyAveragesByAttribute(aggregators);
+        });
+    }
 
-        // Retrieve a list of all attributes.
-        List<Attribute> attributes = attributeService.getAllAttributes(); // You should have a method to get all attributes
-
-        // Iterate through each attribute and calculate daily averages.
-        for (Attribute attribute : attributes) {
-            // Retrieve attribute values for the specified department and date range.
-            List<AttributeValue> attributeValues = attributeValueRepository.findAttributeValuesInDepartmentBetweenDates(department, attribute, startOfDay, endOfDay);
-            
-            // Calculate daily averages for the current attribute.
-            Map<LocalDate, Double> dailyAverages = calculateDailyAverages(attributeValues);
-            
-            // Store the daily averages in the map using the attribute name as the key.
-            dailyAveragesByAttribute.put(attribute.getName(), dailyAverages);
+    
+    /**
+     * Daily statistics of a department, computed one room at a time on the analytics executor and then merged,
+     * so the answer takes about as long as the slowest room. Recent ranges are served from memory, older ones
+     * from the daily rollups.
+     *
+     * @param attributeId The ID of the attribute, or null for every attribute.
+     * @return One aggregator per attribute that has values, by attribute ID.
+     * @throws AnalyticsUnavailableException If the rooms were not all aggregated before the deadline.
+     */
+    private Map<Long, DailyAggregator> aggregateDailyInDepartment(Department department, Long attributeId, LocalDate startDate, LocalDate endDate) {
+        DepartmentNode departmentNode = hierarchyStore.get().getDepartment(department.getId());
+        List<Supplier<Map<Long, DailyAggregator>>> partitions = new ArrayList<>();
+        boolean inMemory = hotWindowStore.covers(startDate);
+        for (RoomNode room : departmentNode != null ? departmentNode.rooms() : List.<RoomNode>of()) {
+            if (room.tanks().isEmpty()) {
+                continue;
+            }
+            if (inMemory) {
+                List<Long> tankIds = room.tanks().stream().map(TankNode::id).toList();
+                partitions.add(() -> hotWindowStore.aggregateDaily(tankIds, attributeId, startDate, endDate));
+            } else {
+                partitions.add(() -> DailyAggregator.byAttribute(attributeId == null
+                        ? attributeRollupRepository.findDailyAggregatesInRoom(room.id(), startDate.atStartOfDay(), endDate.atStartOfDay())
+                        : attributeRollupRepository.findDailyAggregatesInRoom(room.id(), attributeId, startDate.atStartOfDay(), endDate.atStartOfDay()),
+                        startDate, endDate));
+            }
+        }
+        if (partitions.isEmpty()) {
+            return new HashMap<>();
         }
 
-        return dailyAveragesByAttribute;
+        // Sums and counts add up across rooms, so the merged means are weighted by reading count
+        Map<Long, DailyAggregator> aggregators = new HashMap<>();
+        for (Map<Long, DailyAggregator> roomAggregators : analyticsExecutor.invokeAll(partitions)) {
+            for (Map.Entry<Long, DailyAggregator> entry : roomAggregators.entrySet()) {
+                aggregators.computeIfAbsent(entry.getKey(), id -> new DailyAggregator(startDate, endDate)).merge(entry.getValue());
+            }
+        }
+        return aggregators;
     }
 
     
+    /**
+     * Get the daily averages of several attributes over several tanks, rooms and departments at once.
+     * Results are taken from the daily-average cache where possible. On the first miss, every scope is aggregated in
+     * one pass, from memory or from one grouped rollup query per {@value #MAX_TANKS_PER_QUERY} tanks, with each row
+     * added straight into the aggregators of the scopes its tank belongs to.
+     *
+     * @param request The scopes, the attribute IDs and the date range.
+     * @return The daily averages of every attribute, per scope in request order.
+     * @throws IllegalArgumentException If a scope type or an attribute is unknown, a field is missing, the range is
+     *                                  longer than {@link DailyAggregator#MAX_DAYS} or the request asks for more
+     *                                  than fishhatchery.analytics.batch-max-series series.
+     * @throws EntityNotFoundException If a scope does not exist.
+     */
+    public List<ScopeDailyAverages> getDailyAveragesOfScopes(DailyAverageBatchRequest request) {
+        LocalDate startDate = request.getStartDate();
+        LocalDate endDate = request.getEndDate();
+        if (request.getScopes() == null || request.getAttributeIds() == null || startDate == null || endDate == null) {
+            throw new IllegalArgumentException("scopes, attributeIds, startDate and endDate are required");
+        }
+        if (!DailyAggregator.isSupportedRange(startDate, endDate)) {
+            throw new IllegalArgumentException("The range covers at most " + DailyAggregator.MAX_DAYS + " days");
+        }
+        List<Long> attributeIds = new ArrayList<>(new LinkedHashSet<>(request.getAttributeIds()));
+        // Every scope and attribute takes an aggregator over the whole range
+        if ((long) request.getScopes().size() * attributeIds.size() > batchMaxSeries) {
+            throw new IllegalArgumentException("At most " + batchMaxSeries + " series (scopes times attributes) per request");
+        }
+        try {
+            attributeCatalogue.requireAll(attributeIds);
+        } catch (EntityNotFoundException e) {
+            // Unknown attributes are a bad request, unknown scopes are not found
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+
+        // Taken before any data is read, since results computed on a later miss reuse what the first one read
+        DailyAverageCache.Mark mark = dailyAverageCache.mark();
+
+        // Tanks of every scope, from the hierarchy snapshot
+        HierarchySnapshot hierarchy = hierarchyStore.get();
+        List<Scope> scopeTypes = new ArrayList<>();
+        List<List<Long>> tankIdsByScope = new ArrayList<>();
+        for (DailyAverageBatchRequest.ScopeId scopeId : request.getScopes()) {
+            if (scopeId.getType() == null || scopeId.getId() == null) {
+                throw new IllegalArgumentException("Every scope needs a type and an id");
+            }
+            Scope scope = Scope.valueOf(scopeId.getType().toUpperCase());
+            scopeTypes.add(scope);
+            tankIdsByScope.add(tankIdsOf(hierarchy, scope, scopeId.getId()));
+        }
+
+        DailyAggregator[][] aggregators = new DailyAggregator[scopeTypes.size()][];
+        List<ScopeDailyAverages> results = new ArrayList<>(scopeTypes.size());
+        for (int i = 0; i < scopeTypes.size(); i++) {
+            Scope scope = scopeTypes.get(i);
+            Long id = request.getScopes().get(i).getId();
+            int scopeIndex = i;
+            Map<Long, Map<LocalDate, Double>> averagesByAttributeId = new LinkedHashMap<>();
+            for (int j = 0; j < attributeIds.size(); j++) {
+                int attributeIndex = j;
+                averagesByAttributeId.put(attributeIds.get(j), dailyAverageCache.getDailyAverages(scope, id, attributeIds.get(j), startDate, endDate, mark, () -> {
+                    if (aggregators[0] == null) {
+                        aggregateDailyByScope(tankIdsByScope, attributeIds, startDate, endDate, aggregators);
+                    }
+                    return calculateDailyAverages(aggregators[scopeIndex][attributeIndex]);
+                }));
+            }
+            results.add(new ScopeDailyAverages(scope, id, averagesByAttributeId));
+        }
+        return results;
+    }
+
+    private static List<Long> tankIdsOf(HierarchySnapshot hierarchy, Scope scope, Long id) {
+        List<Long> tankIds = new ArrayList<>();
+        switch (scope) {
+            case TANK:
+                if (hierarchy.getTank(id) == null) {
+                    throw new EntityNotFoundException("Tank not found with ID: " + id);
+                }
+                tankIds.add(id);
+                break;
+            case ROOM:
+                RoomNode room = hierarchy.getRoom(id);
+                if (room == null) {
+                    throw new EntityNotFoundException("Room not found with ID: " + id);
+                }
+                for (TankNode tank : room.tanks()) {
+                    tankIds.add(tank.id());
+                }
+                break;
+            default:
+                DepartmentNode department = hierarchy.getDepartment(id);
+                if (department == null) {
+                    throw new EntityNotFoundException("Department not found with ID: " + id);
+                }
+                for (RoomNode departmentRoom : department.rooms()) {
+                    for (TankNode tank : departmentRoom.tanks()) {
+                        tankIds.add(tank.id());
+                    }
+                }
+        }
+        return tankIds;
+    }
+
+    /**
+     * Daily statistics of some attributes per scope, from memory or from the daily rollups.
+     * Only scopes and attributes that have values get an aggregator, so memory follows the number of series with
+     * data rather than the number of tanks.
+     *
+     * @param aggregators Filled with one row per scope, holding one aggregator per attribute, or null where the
+     *                    attribute has no values in the scope.
+     */
+    private void aggregateDailyByScope(List<List<Long>> tankIdsByScope, List<Long> attributeIds, LocalDate startDate, LocalDate endDate, DailyAggregator[][] aggregators) {
+        for (int i = 0; i < aggregators.length; i++) {
+            aggregators[i] = new DailyAggregator[attributeIds.size()];
+        }
+        if (hotWindowStore.covers(startDate)) {
+            for (int i = 0; i < aggregators.length; i++) {
+                for (int j = 0; j < attributeIds.size(); j++) {
+                    aggregators[i][j] = hotWindowStore.aggregateDaily(tankIdsByScope.get(i), attributeIds.get(j), startDate, endDate).get(attributeIds.get(j));
+                }
+            }
+            return;
+        }
+
+        // A tank can belong to several scopes, say a room and its department
+        Map<Long, List<Integer>> scopeIndexesByTankId = new LinkedHashMap<>();
+        for (int i = 0; i < aggregators.length; i++) {
+            for (Long tankId : tankIdsByScope.get(i)) {
+                scopeIndexesByTankId.computeIfAbsent(tankId, id -> new ArrayList<>(1)).add(i);
+            }
+        }
+        Map<Long, Integer> attributeIndexById = new HashMap<>();
+        for (int j = 0; j < attributeIds.size(); j++) {
+            attributeIndexById.put(attributeIds.get(j), j);
+        }
+
+        List<Long> tankIds = new ArrayList<>(scopeIndexesByTankId.keySet());
+        for (int from = 0; from < tankIds.size(); from += MAX_TANKS_PER_QUERY) {
+            List<Long> chunk = tankIds.subList(from, Math.min(from + MAX_TANKS_PER_QUERY, tankIds.size()));
+            for (TankDailyAggregate aggregate : attributeRollupRepository.findDailyAggregatesByTank(chunk, attributeIds, startDate.atStartOfDay(), endDate.atStartOfDay())) {
+                int attributeIndex = attributeIndexById.get(aggregate.getAttributeId());
+                long epochDay = aggregate.getDay().toEpochDay();
+                for (int scopeIndex : scopeIndexesByTankId.get(aggregate.getTankId())) {
+                    if (aggregators[scopeIndex][attributeIndex] == null) {
+                        aggregators[scopeIndex][attributeIndex] = new DailyAggregator(startDate, endDate);
+                    }
+                    aggregators[scopeIndex][attributeIndex].merge(epochDay, aggregate.getSum(), aggregate.getCount());
+                }
+            }
+        }
+    }
+
+    
+    /**
+     * Get the average values of an attribute in a tank per hour, day, week or month between two timestamps.
+     *
+     * @param tank       The tank for which to retrieve attribute values.
+     * @param attribute  The attribute for which to retrieve values.
+     * @param resolution The bucket size.
+     * @param start      The start of the time range.
+     * @param end        The end of the time range.
+     * @return The average value of each bucket, keyed by bucket start, in chronological order.
+     */
+    public Map<LocalDateTime, Double> getBucketedAverageAttributeValuesInTank(Tank tank, Attribute attribute, RollupResolution resolution, LocalDateTime start, LocalDateTime end) {
+        List<BucketAggregate> aggregates = attributeRollupRepository.findBucketAggregatesInTank(
+                tank.getId(), attribute.getId(), resolution, resolution.truncate(start), resolution.next(resolution.truncate(end)));
+
+        return calculateBucketAverages(aggregates);
+    }
+
     
+    /**
+     * Get the average values of an attribute in a room per hour, day, week or month between two timestamps.
+     *
+     * @param room       The room for which to retrieve attribute values.
+     * @param attribute  The attribute for which to retrieve values.
+     * @param resolution The bucket size.
+     * @param start      The start of the time range.
+     * @param end        The end of the time range.
+     * @return The average value of each bucket, keyed by bucket start, in chronological order.
+     */
+    public Map<LocalDateTime, Double> getBucketedAverageAttributeValuesInRoom(Room room, Attribute attribute, RollupResolution resolution, LocalDateTime start, LocalDateTime end) {
+        List<BucketAggregate> aggregates = attributeRollupRepository.findBucketAggregatesInRoom(
+                room.getId(), attribute.getId(), resolution, resolution.truncate(start), resolution.next(resolution.truncate(end)));
+
+        return calculateBucketAverages(aggregates);
+    }
+
     
+    /**
+     * Get the average values of an attribute in a department per hour, day, week or month between two timestamps.
+     *
+     * @param department The department for which to retrieve attribute values.
+     * @param attribute  The attribute for which to retrieve values.
+     * @param resolution The bucket size.
+     * @param start      The start of the time range.
+     * @param end        The end of the time range.
+     * @return The average value of each bucket, keyed by bucket start, in chronological order.
+     */
+    public Map<LocalDateTime, Double> getBucketedAverageAttributeValuesInDepartment(Department department, Attribute attribute, RollupResolution resolution, LocalDateTime start, LocalDateTime end) {
+        List<BucketAggregate> aggregates = attributeRollupRepository.findBucketAggregatesInDepartment(
+                department.getId(), attribute.getId(), resolution, resolution.truncate(start), resolution.next(resolution.truncate(end)));
+
+        return calculateBucketAverages(aggregates);
+    }
+
+    
+    /**
+     * Calculate bucket averages from bucket sums and counts, keeping their order.
+     *
+     * @param aggregates The bucket sums and counts of one attribute.
+     * @return A map containing the average value of each bucket.
+     */
+    private Map<LocalDateTime, Double> calculateBucketAverages(List<BucketAggregate> aggregates) {
+        Map<LocalDateTime, Double> bucketAverages = new LinkedHashMap<>();
+        for (BucketAggregate aggregate : aggregates) {
+            bucketAverages.put(aggregate.getBucketStart(), aggregate.getSum() / aggregate.getCount());
+        }
+        return bucketAverages;
+    }
+
+    
+    /**
+     * Turn per-attribute daily aggregators into daily averages keyed by attribute name.
+     * Every known attribute gets an entry, attributes without values get an empty map.
+     *
+     * @param aggregatorsByAttributeId The daily values, keyed by attribute ID.
+     * @return A map containing daily average values for each attribute, where attribute names are keys.
+     */
+    private Map<String, Map<LocalDate, Double>> calculateDailyAveragesByAttribute(Map<Long, DailyAggregator> aggregatorsByAttributeId) {
+        Map<String, Map<LocalDate, Double>> dailyAveragesByAttribute = new HashMap<>();
+        for (Attribute attribute : attributeService.getAllAttributes()) {
+            dailyAveragesByAttribute.put(attribute.getName(), calculateDailyAverages(aggregatorsByAttributeId.get(attribute.getId())));
+        }
+
+        return dailyAveragesByAttribute;
+    }
 }
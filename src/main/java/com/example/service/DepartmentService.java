@@ -1,17 +1,38 @@
 package com.example.service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.RequestBody;
 
+import com.example.cache.HierarchySnapshot;
+import com.example.cache.HierarchyStore;
+import com.example.dto.CursorPage;
+import com.example.dto.HierarchySummary;
+import com.example.dto.DepartmentNode;
+import com.example.dto.PageCursor;
+import com.example.dto.HierarchyEntry;
+import com.example.dto.NamedId;
+import com.example.dto.TankPlacement;
 import com.example.entity.Department;
 import com.example.entity.Room;
 import com.example.entity.Tank;
+import com.example.entity.TankPurge;
+import com.example.event.HierarchyChangedEvent;
 import com.example.repository.DepartmentRepository;
+import com.example.repository.HierarchyBatchWriter;
+import com.example.repository.RoomRepository;
+import com.example.repository.TankRepository;
 
 @Service
 public class DepartmentService {
@@ -19,11 +40,29 @@ public class DepartmentService {
 	@Autowired
     private DepartmentRepository departmentRepository;
 	
-	@Autowired 
-	private TankService tankService;
+	@Autowired
+	private RoomRepository roomRepository;
+	
+	@Autowired
+	private TankRepository tankRepository;
+	
+	@Autowired
+	private HierarchyBatchWriter hierarchyBatchWriter;
+	
+	@Autowired
+	private PurgeService purgeService;
+	
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+	
+	@Autowired
+	private HierarchyStore hierarchyStore;
+	
+	@Autowired
+	private PageLimits pageLimits;
 	
 	@Autowired
-	private RoomService roomService;
+	private ApplicationEventPublisher eventPublisher;
 
     public List<Department> getAllDepartments() {
         return departmentRepository.findAll();
@@ -33,143 +72,248 @@ public class DepartmentService {
         return departmentRepository.findById(id).orElse(null);
     }
 
+    /**
+     * @return Every department with its rooms and tanks, from the hierarchy snapshot.
+     */
+    public List<DepartmentNode> getDepartmentNodes() {
+        return hierarchyStore.get().getDepartments();
+    }
+
+    /**
+     * @param cursor The next cursor of the previous page, or null for the first page.
+     * @param limit  The largest number of departments on the page, or null for the default page size.
+     * @return A page of departments in ID order, from the hierarchy snapshot.
+     * @throws IllegalArgumentException If the cursor or the limit is not valid.
+     */
+    public CursorPage<DepartmentNode> getDepartmentNodes(String cursor, Integer limit) {
+        int pageSize = pageLimits.resolve(limit);
+        Long afterId = cursor != null ? PageCursor.decode(cursor).id() : null;
+        List<DepartmentNode> departments = hierarchyStore.get().getDepartmentsAfter(afterId, pageSize + 1);
+        return CursorPage.of(departments, pageSize, department -> PageCursor.after(department.id()));
+    }
+
+    /**
+     * @param id The ID of the department.
+     * @return The department with its rooms and tanks from the hierarchy snapshot, or null if there is none with this ID.
+     */
+    public DepartmentNode getDepartmentNodeById(Long id) {
+        return hierarchyStore.get().getDepartment(id);
+    }
+
+    /**
+     * @return Every department without its children, from the hierarchy snapshot.
+     */
+    public List<HierarchySummary> getDepartmentSummaries() {
+        List<DepartmentNode> departments = hierarchyStore.get().getDepartments();
+        List<HierarchySummary> summaries = new ArrayList<>(departments.size());
+        for (DepartmentNode department : departments) {
+            summaries.add(HierarchySummary.of(department));
+        }
+        return summaries;
+    }
+
+    /**
+     * @param cursor The next cursor of the previous page, or null for the first page.
+     * @param limit  The largest number of departments on the page, or null for the default page size.
+     * @return A page of departments without their children in ID order, from the hierarchy snapshot.
+     * @throws IllegalArgumentException If the cursor or the limit is not valid.
+     */
+    public CursorPage<HierarchySummary> getDepartmentSummaries(String cursor, Integer limit) {
+        return getDepartmentNodes(cursor, limit).map(HierarchySummary::of);
+    }
+
+    /**
+     * @param id The ID of the department.
+     * @return The department without its children from the hierarchy snapshot, or null if there is none with this ID.
+     */
+    public HierarchySummary getDepartmentSummaryById(Long id) {
+        DepartmentNode department = hierarchyStore.get().getDepartment(id);
+        return department != null ? HierarchySummary.of(department) : null;
+    }
+
     public Department saveDepartment(Department department) {
-        return departmentRepository.save(department);
+        Department savedDepartment = departmentRepository.save(department);
+        eventPublisher.publishEvent(new HierarchyChangedEvent());
+        return savedDepartment;
     }
     
     public List<Department> saveDepartments(List<Department> departments) {
-        return departmentRepository.saveAll(departments);
+        List<Department> savedDepartments = departmentRepository.saveAll(departments);
+        eventPublisher.publishEvent(new HierarchyChangedEvent());
+        return savedDepartments;
     }
 
-    public void deleteDepartment(Long id) {
-        departmentRepository.deleteById(id);
+    /**
+     * Delete a department with its rooms and tanks. They are gone once this returns; the attribute values and
+     * rollups of the tanks are purged in the background.
+     * @param id The ID of the department.
+     * @return The purges of the tanks' attribute values, or null if there is no department with this ID.
+     */
+    @Transactional
+    public List<TankPurge> deleteDepartment(Long id) {
+        if (!departmentRepository.existsById(id)) {
+            return null;
+        }
+        List<Long> tankIds = tankRepository.findIdsByDepartmentId(id);
+        List<TankPurge> purges = purgeService.schedule(tankIds);
+        hierarchyBatchWriter.deleteByIds("Tank", "id", tankIds);
+        hierarchyBatchWriter.deleteByIds("Room", "id", roomRepository.findIdsByDepartmentId(id));
+        hierarchyBatchWriter.deleteByIds("Department", "id", List.of(id));
+        eventPublisher.publishEvent(new HierarchyChangedEvent());
+        return purges;
     }
     
     /**
      * Creates or updates a list of departments based on the provided JSON payload.
      * Departments, rooms, and tanks that are not present in the payload will be deleted.
+     * The attribute values of deleted tanks are purged in the background.
+     * <p>
+     * The existing hierarchy is read once, as three flat lists, and compared with the payload by ID. New nodes are
+     * inserted one by one since their IDs come from the database; renames, moves and deletes are applied in batches.
+     * Everything runs in one transaction, and the hierarchy snapshot is rebuilt once after it committed.
      * @param departments A list of departments to create or update.
-     * @return A list of saved departments after processing.
+     * @return The saved departments with their rooms and tanks, in payload order.
      */
-    
-    
-    public List<Department> createOrUpdateDepartments(@RequestBody List<Department> departments) {
-        List<Department> savedDepartments = new ArrayList<>();
-        List<Long> departmentIdsToKeep = new ArrayList<>();
-        List<Long> roomIdsToKeep = new ArrayList<>();
-        List<Long> tankIdsToKeep = new ArrayList<>();
+    public List<DepartmentNode> createOrUpdateDepartments(@RequestBody List<Department> departments) {
+        List<Long> departmentIds = transactionTemplate.execute(status -> reconcile(departments));
 
-        // Get a list of all existing department IDs before the update
-        List<Long> existingDepartmentIds = getAllDepartments()
-                .stream()
-                .map(Department::getId)
-                .collect(Collectors.toList());
+        // The snapshot was rebuilt when the transaction committed
+        HierarchySnapshot hierarchy = hierarchyStore.get();
+        List<DepartmentNode> savedDepartments = new ArrayList<>();
+        for (Long departmentId : departmentIds) {
+            DepartmentNode department = hierarchy.getDepartment(departmentId);
+            if (department != null) {
+                savedDepartments.add(department);
+            }
+        }
+        return savedDepartments;
+    }
 
-        for (Department department : departments) {       
+    private List<Long> reconcile(List<Department> departments) {
+        // The existing hierarchy, by ID
+        Map<Long, String> existingDepartmentNames = new HashMap<>();
+        for (NamedId department : departmentRepository.findAllNamedIds()) {
+            existingDepartmentNames.put(department.id(), department.name());
+        }
+        Map<Long, HierarchyEntry> existingRooms = new HashMap<>();
+        for (HierarchyEntry room : roomRepository.findAllHierarchyEntries()) {
+            existingRooms.put(room.id(), room);
+        }
+        Map<Long, HierarchyEntry> existingTanks = new HashMap<>();
+        for (HierarchyEntry tank : tankRepository.findAllHierarchyEntries()) {
+            existingTanks.put(tank.id(), tank);
+        }
 
-            // Iterate through rooms and update/create them
-            List<Room> updatedRooms = new ArrayList<>();
-            for (Room room : department.getRooms()) {
-            	
-            	// Iterate through tanks and update/create them
-            	List<Tank> updatedTanks = new ArrayList<>();
-                for (Tank tank : room.getTanks()) {
-                    if (tank.getId() == null) {
-                        // Create a new tank
-                        tank.setRoom(room); // Set the room
-                    } else {
-                        // Check if the tank with the same ID exists
-                        Tank existingTank = tankService.getTankById(tank.getId());
-                        if (existingTank != null) {
-                            // Update existing tank fields
-                            existingTank.setName(tank.getName());
-                            tank = existingTank;
-                        }
-                    }
+        List<Long> departmentIdsToKeep = new ArrayList<>();
+        Set<Long> roomIdsToKeep = new HashSet<>();
+        Set<Long> tankIdsToKeep = new HashSet<>();
+        Map<Long, String> departmentRenames = new HashMap<>();
+        Map<Long, String> roomRenames = new HashMap<>();
+        Map<Long, String> tankRenames = new HashMap<>();
+        Map<Long, Long> roomMoves = new HashMap<>();
+        Map<Long, Long> tankMoves = new HashMap<>();
+        // Department of every room in the payload, to place the attribute values of tanks that moved
+        Map<Long, Long> departmentIdsByRoomId = new HashMap<>();
+        boolean created = false;
 
-                    // Add tank IDs to the list of IDs to keep
-                    tankIdsToKeep.add(tank.getId());
+        for (Department department : departments) {
+            Long departmentId = department.getId();
+            if (departmentId == null || !existingDepartmentNames.containsKey(departmentId)) {
+                // Create a new department
+                Department newDepartment = new Department();
+                newDepartment.setName(department.getName());
+                departmentId = departmentRepository.save(newDepartment).getId();
+                created = true;
+            } else if (!Objects.equals(existingDepartmentNames.get(departmentId), department.getName())) {
+                departmentRenames.put(departmentId, department.getName());
+            }
+            departmentIdsToKeep.add(departmentId);
 
-                    updatedTanks.add(tank);
-                }
-            	
-                if (room.getId() == null) {
+            for (Room room : department.getRooms()) {
+                Long roomId = room.getId();
+                HierarchyEntry existingRoom = roomId == null ? null : existingRooms.get(roomId);
+                if (existingRoom == null) {
                     // Create a new room
-                    room.setDepartment(department); // Set the department
+                    Room newRoom = new Room();
+                    newRoom.setName(room.getName());
+                    newRoom.setDepartment(departmentRepository.getReferenceById(departmentId));
+                    roomId = roomRepository.save(newRoom).getId();
+                    created = true;
                 } else {
-                    // Check if the room with the same ID exists
-                    Room existingRoom = roomService.getRoomById(room.getId());
-                    if (existingRoom != null) {
-                        // Update existing room fields
-                        existingRoom.setName(room.getName());
-                        room = existingRoom;
+                    if (!Objects.equals(existingRoom.name(), room.getName())) {
+                        roomRenames.put(roomId, room.getName());
+                    }
+                    // Move the room if it now sits in another department
+                    if (!departmentId.equals(existingRoom.parentId())) {
+                        roomMoves.put(roomId, departmentId);
                     }
                 }
+                roomIdsToKeep.add(roomId);
+                departmentIdsByRoomId.put(roomId, departmentId);
 
-                // Add room IDs to the list of IDs to keep
-                roomIdsToKeep.add(room.getId());
-
-                // Check if the department with the same ID exists
-                if (department.getId() != null) {
-                    Department existingDepartment = getDepartmentById(department.getId());
-                    if (existingDepartment != null) {
-                        // Update existing department fields
-                        existingDepartment.setName(department.getName());
-                        department = existingDepartment;
+                for (Tank tank : room.getTanks()) {
+                    Long tankId = tank.getId();
+                    HierarchyEntry existingTank = tankId == null ? null : existingTanks.get(tankId);
+                    if (existingTank == null) {
+                        // Create a new tank
+                        Tank newTank = new Tank();
+                        newTank.setName(tank.getName());
+                        newTank.setRoom(roomRepository.getReferenceById(roomId));
+                        tankId = tankRepository.save(newTank).getId();
+                        created = true;
+                    } else {
+                        if (!Objects.equals(existingTank.name(), tank.getName())) {
+                            tankRenames.put(tankId, tank.getName());
+                        }
+                        // Move the tank if it now sits in another room
+                        if (!roomId.equals(existingTank.parentId())) {
+                            tankMoves.put(tankId, roomId);
+                        }
                     }
+                    tankIdsToKeep.add(tankId);
                 }
-                // Set the updated list of tanks to the room
-                room.getTanks().clear();
-                room.getTanks().addAll(updatedTanks);
-
-                // Add the room to the list of updated rooms
-                updatedRooms.add(room);
             }
-            // Set the updated list of rooms to the department
-            department.getRooms().clear();
-            department.getRooms().addAll(updatedRooms);
-
-            // Save or update the department and its related entities
-            savedDepartments.add(saveDepartment(department));
-
-            // Add department ID to the list of IDs to keep
-            departmentIdsToKeep.add(department.getId());
         }
 
-        // Delete departments that were not in the JSON payload
-        existingDepartmentIds.removeAll(departmentIdsToKeep);
-        for (Long departmentId : existingDepartmentIds) {
-            deleteDepartment(departmentId);
+        // Everything that is not in the payload goes, tanks before the rooms and departments that held them
+        List<Long> tankIdsToDelete = new ArrayList<>();
+        for (Long tankId : existingTanks.keySet()) {
+            if (!tankIdsToKeep.contains(tankId)) {
+                tankIdsToDelete.add(tankId);
+            }
         }
-
-        // Retrieve all existing room IDs
-        List<Long> existingRoomIds = roomService.getAllRooms()
-                .stream()
-                .map(Room::getId)
-                .collect(Collectors.toList());
-
-        System.out.println(roomIdsToKeep);
-        // Delete rooms that were not in the JSON payload
-        existingRoomIds.removeAll(roomIdsToKeep);
-        for (Long roomId : existingRoomIds) {
-            roomService.deleteRoom(roomId);
+        List<Long> roomIdsToDelete = new ArrayList<>();
+        for (Long roomId : existingRooms.keySet()) {
+            if (!roomIdsToKeep.contains(roomId)) {
+                roomIdsToDelete.add(roomId);
+            }
         }
+        Set<Long> departmentIdsToDelete = new HashSet<>(existingDepartmentNames.keySet());
+        departmentIdsToDelete.removeAll(departmentIdsToKeep);
 
-        // Delete tanks that were not in the JSON payload
-        List<Long> existingTankIds = tankService.getAllTanks()
-                .stream()
-                .map(Tank::getId)
-                .collect(Collectors.toList());
-        existingTankIds.removeAll(tankIdsToKeep);
-        for (Long tankId : existingTankIds) {
-            tankService.deleteTank(tankId);
-        }
+        // Rooms move before tanks, so a tank that moved ends up with the department of its new room
+        List<TankPlacement> tankPlacements = new ArrayList<>();
+        tankMoves.forEach((tankId, roomId) -> tankPlacements.add(new TankPlacement(tankId, roomId, departmentIdsByRoomId.get(roomId))));
+        departmentRepository.flush();
+        hierarchyBatchWriter.rename("Department", departmentRenames);
+        hierarchyBatchWriter.rename("Room", roomRenames);
+        hierarchyBatchWriter.rename("Tank", tankRenames);
+        hierarchyBatchWriter.moveRooms(roomMoves);
+        hierarchyBatchWriter.moveTanks(tankPlacements);
+        purgeService.schedule(tankIdsToDelete);
+        hierarchyBatchWriter.deleteByIds("Tank", "id", tankIdsToDelete);
+        hierarchyBatchWriter.deleteByIds("Room", "id", roomIdsToDelete);
+        hierarchyBatchWriter.deleteByIds("Department", "id", departmentIdsToDelete);
 
-        return savedDepartments;
+        if (created || !departmentRenames.isEmpty() || !roomRenames.isEmpty() || !tankRenames.isEmpty()
+                || !roomMoves.isEmpty() || !tankMoves.isEmpty()
+                || !tankIdsToDelete.isEmpty() || !roomIdsToDelete.isEmpty() || !departmentIdsToDelete.isEmpty()) {
+            eventPublisher.publishEvent(new HierarchyChangedEvent());
+        }
+        return departmentIdsToKeep;
     }
     
     
-    
 //    public List<Department> createOrUpdateDepartments(@RequestBody List<Department> departments) {
 //        List<Department> savedDepartments = new ArrayList<>();
 //        List<Long> departmentIdsToKeep = new ArrayList<>();
@@ -0,0 +1,32 @@
+package com.example.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Page sizes of the paginated endpoints.
+ */
+@Component
+public class PageLimits {
+
+    @Value("${fishhatchery.pagination.default-page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${fishhatchery.pagination.max-page-size:1000}")
+    private int maxPageSize;
+
+    /**
+     * @param limit The page size asked for, or null for the default.
+     * @return The page size to use, at most {@code fishhatchery.pagination.max-page-size}.
+     * @throws IllegalArgumentException If the page size asked for is not positive.
+     */
+    public int resolve(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("The limit must be positive");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.cache.HierarchySnapshot;
+import com.example.cache.HierarchyStore;
+import com.example.cache.HotWindowStore;
+import com.example.dto.TankNode;
+import com.example.entity.TankPurge;
+import com.example.repository.HierarchyBatchWriter;
+import com.example.repository.TankPurgeRepository;
+
+/**
+ * Removes the attribute values and rollups of deleted tanks in the background.
+ * <p>
+ * Deleting a tank, room or department only deletes the hierarchy rows and records a {@link TankPurge} per tank,
+ * in the same transaction. The readings left behind are no longer reachable: tank queries find no tank, and room
+ * and department queries go through the remaining tanks. They are deleted here in chunks of
+ * {@code fishhatchery.purge.chunk-size} rows, each in a short transaction of its own, so no lock is held for long
+ * and writes to other tanks go on. Progress is stored with every chunk; purges interrupted by a restart continue
+ * where they stopped.
+ */
+@Service
+public class PurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PurgeService.class);
+
+    // Purges reported by getPurges
+    private static final int RECENT_PURGES = 100;
+
+    @Autowired
+    private TankPurgeRepository tankPurgeRepository;
+
+    @Autowired
+    private HierarchyBatchWriter hierarchyBatchWriter;
+
+    @Autowired
+    private HierarchyStore hierarchyStore;
+
+    @Autowired
+    private HotWindowStore hotWindowStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${fishhatchery.purge.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${fishhatchery.purge.chunks-per-run:20}")
+    private int chunksPerRun;
+
+    /**
+     * Record the purges of tanks about to be deleted. Joins the deleting transaction, so the purges only
+     * start once the tanks are gone.
+     *
+     * @param tankIds The IDs of the tanks.
+     * @return The purges, one per tank.
+     */
+    public List<TankPurge> schedule(Collection<Long> tankIds) {
+        HierarchySnapshot hierarchy = hierarchyStore.get();
+        LocalDateTime now = LocalDateTime.now();
+        List<TankPurge> purges = new ArrayList<>(tankIds.size());
+        for (Long tankId : tankIds) {
+            TankPurge purge = new TankPurge();
+            purge.setTankId(tankId);
+            TankNode tank = hierarchy.getTank(tankId);
+            if (tank != null) {
+                purge.setTankName(tank.name());
+            }
+            purge.setRequestedAt(now);
+            purges.add(purge);
+        }
+        return tankPurgeRepository.saveAll(purges);
+    }
+
+    /**
+     * @return The running purges and the most recent finished ones, newest first.
+     */
+    public List<TankPurge> getPurges() {
+        return tankPurgeRepository.findRecent(PageRequest.of(0, RECENT_PURGES));
+    }
+
+    public TankPurge getPurgeById(Long id) {
+        return tankPurgeRepository.findById(id).orElse(null);
+    }
+
+    /**
+     * Works through the running purges, oldest first, deleting at most {@code fishhatchery.purge.chunks-per-run}
+     * chunks before giving the scheduler thread back.
+     */
+    @Scheduled(fixedDelayString = "${fishhatchery.purge.interval-ms:1000}")
+    public void purgeUnfinished() {
+        int chunksLeft = chunksPerRun;
+        for (TankPurge purge : tankPurgeRepository.findUnfinished()) {
+            try {
+                while (chunksLeft > 0) {
+                    chunksLeft--;
+                    if (transactionTemplate.execute(status -> purgeChunk(purge))) {
+                        hotWindowStore.forgetTank(purge.getTankId());
+                        logger.info("Purged the attribute values and rollups of deleted tank {}", purge.getTankId());
+                        break;
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Retried on the next run
+                logger.error("Could not purge deleted tank {}", purge.getTankId(), e);
+                return;
+            }
+            if (chunksLeft == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Deletes one chunk of the tank's attribute values, then of its rollups once the values are gone.
+     *
+     * @return Whether the purge is finished.
+     */
+    private boolean purgeChunk(TankPurge purge) {
+        int readings = hierarchyBatchWriter.deleteChunkOfTank("AttributeValue", purge.getTankId(), chunkSize);
+        int rollups = 0;
+        if (readings < chunkSize) {
+            rollups = hierarchyBatchWriter.deleteChunkOfTank("AttributeRollup", purge.getTankId(), chunkSize - readings);
+        }
+        if (readings + rollups > 0) {
+            tankPurgeRepository.addProgress(purge.getId(), readings, rollups);
+        }
+        if (readings + rollups < chunkSize) {
+            tankPurgeRepository.finish(purge.getId(), LocalDateTime.now());
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.cache.HierarchySnapshot;
+import com.example.cache.HierarchyStore;
+import com.example.dto.TankReading;
+import com.example.repository.AttributeValueRepository;
+
+/**
+ * Writes raw readings straight from a database cursor to an output stream, one line per reading,
+ * so an export never holds more than one fetch batch and one write buffer in memory.
+ * Readings of deleted tanks that are still waiting to be purged are left out.
+ */
+@Service
+public class ReadingExportService {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The line formats an export can be written in.
+     */
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    @Autowired
+    private AttributeValueRepository attributeValueRepository;
+
+    @Autowired
+    private HierarchyStore hierarchyStore;
+
+    /**
+     * Export the readings of a tank in a time range.
+     *
+     * @param tankId The ID of the tank.
+     * @param start  The start of the time range, inclusive.
+     * @param end    The end of the time range, exclusive.
+     * @param format The line format.
+     * @param output The stream to write to. It is flushed but not closed.
+     * @return The number of readings written.
+     */
+    @Transactional(readOnly = true)
+    public long exportTankReadings(Long tankId, LocalDateTime start, LocalDateTime end, Format format, OutputStream output) throws IOException {
+        try (Stream<TankReading> readings = attributeValueRepository.streamReadingsInTankBetween(tankId, start, end)) {
+            return write(readings, format, output);
+        }
+    }
+
+    /**
+     * Export the readings of all tanks of a room in a time range.
+     *
+     * @param roomId The ID of the room.
+     * @param start  The start of the time range, inclusive.
+     * @param end    The end of the time range, exclusive.
+     * @param format The line format.
+     * @param output The stream to write to. It is flushed but not closed.
+     * @return The number of readings written.
+     */
+    @Transactional(readOnly = true)
+    public long exportRoomReadings(Long roomId, LocalDateTime start, LocalDateTime end, Format format, OutputStream output) throws IOException {
+        try (Stream<TankReading> readings = attributeValueRepository.streamReadingsInRoomBetween(roomId, start, end)) {
+            return write(readings, format, output);
+        }
+    }
+
+    /**
+     * Export the readings of all tanks of a department in a time range.
+     *
+     * @param departmentId The ID of the department.
+     * @param start        The start of the time range, inclusive.
+     * @param end          The end of the time range, exclusive.
+     * @param format       The line format.
+     * @param output       The stream to write to. It is flushed but not closed.
+     * @return The number of readings written.
+     */
+    @Transactional(readOnly = true)
+    public long exportDepartmentReadings(Long departmentId, LocalDateTime start, LocalDateTime end, Format format, OutputStream output) throws IOException {
+        try (Stream<TankReading> readings = attributeValueRepository.streamReadingsInDepartmentBetween(departmentId, start, end)) {
+            return write(readings, format, output);
+        }
+    }
+
+    private long write(Stream<TankReading> readings, Format format, OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        if (format == Format.CSV) {
+            writer.write("tankId,attributeId,timestamp,value\n");
+        }
+
+        HierarchySnapshot hierarchy = hierarchyStore.get();
+        long count = 0;
+        Iterator<TankReading> iterator = readings.iterator();
+        while (iterator.hasNext()) {
+            TankReading reading = iterator.next();
+            if (hierarchy.getTank(reading.tankId()) == null) {
+                continue;
+            }
+            String timestamp = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(reading.timestamp());
+            if (format == Format.CSV) {
+                writer.write(reading.tankId() + "," + reading.attributeId() + "," + timestamp + "," + reading.value() + "\n");
+            } else {
+                writer.write("{\"tankId\":" + reading.tankId()
+                        + ",\"attributeId\":" + reading.attributeId()
+                        + ",\"timestamp\":\"" + timestamp
+                        + "\",\"value\":" + jsonNumber(reading.value()) + "}\n");
+            }
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    // JSON has no literal for NaN or infinity
+    private static String jsonNumber(double value) {
+        return Double.isFinite(value) ? Double.toString(value) : "null";
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.cache.AttributeCatalogue;
+import com.example.dto.ImportProgress;
+import com.example.dto.NamedId;
+import com.example.dto.TankReading;
+import com.example.entity.Attribute;
+import com.example.repository.TankRepository;
+
+/**
+ * Imports readings from a CSV stream of {@code tank,attribute,timestamp,value} lines.
+ * <p>
+ * Tanks and attributes may be given by ID or by name; both are resolved from lookups loaded once per import.
+ * The stream is read line by line and written in chunks of {@code fishhatchery.import.chunk-size} readings,
+ * each chunk committed on its own, so memory use does not grow with the file and a failure only loses
+ * the chunk it happened in. Lines that cannot be used are counted and skipped.
+ */
+@Service
+public class ReadingImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadingImportService.class);
+
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+    private static final int MAX_REMEMBERED_IMPORTS = 20;
+
+    @Autowired
+    private AttributeValueService attributeValueService;
+
+    @Autowired
+    private AttributeCatalogue attributeCatalogue;
+
+    @Autowired
+    private TankRepository tankRepository;
+
+    @Autowired
+    private ReadingPartitionService readingPartitionService;
+
+    @Value("${fishhatchery.import.chunk-size:50000}")
+    private int chunkSize;
+
+    private final AtomicLong importIds = new AtomicLong();
+
+    // Running imports and the last finished ones, newest first
+    private final Deque<ImportProgress> imports = new ArrayDeque<>();
+
+    /**
+     * @return The progress of running imports and of the most recent finished ones, newest first.
+     */
+    public synchronized List<ImportProgress> getImports() {
+        return new ArrayList<>(imports);
+    }
+
+    /**
+     * Import readings from a CSV stream. Runs until the stream ends, or until reading it or writing a chunk fails,
+     * in which case the chunks committed so far stay and the progress carries the error.
+     *
+     * @param input The CSV data, UTF-8, optionally starting with a header line.
+     * @return The final progress of the import.
+     */
+    public ImportProgress importCsv(InputStream input) {
+        ImportProgress progress = register();
+        Set<Long> tankIds = new HashSet<>();
+        Map<String, Long> tankIdsByName = new HashMap<>();
+        Set<String> ambiguousTankNames = new HashSet<>();
+        for (NamedId tank : tankRepository.findAllNamedIds()) {
+            tankIds.add(tank.id());
+            if (tank.name() != null && tankIdsByName.put(tank.name(), tank.id()) != null) {
+                ambiguousTankNames.add(tank.name());
+            }
+        }
+        // One read per import, so attributes added behind the application's back are picked up
+        attributeCatalogue.invalidate();
+        Set<Long> attributeIds = new HashSet<>();
+        Map<String, Long> attributeIdsByName = new HashMap<>();
+        for (Attribute attribute : attributeCatalogue.getAll()) {
+            attributeIds.add(attribute.getId());
+            if (attribute.getName() != null) {
+                attributeIdsByName.put(attribute.getName(), attribute.getId());
+            }
+        }
+
+        LocalDate firstRetainedDay = readingPartitionService.getFirstRetainedDay();
+
+        List<TankReading> chunk = new ArrayList<>(chunkSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long lineNumber = progress.getLinesRead() + 1;
+                progress.setLinesRead(lineNumber);
+                if (line.isBlank() || (lineNumber == 1 && line.trim().toLowerCase().startsWith("tank"))) {
+                    continue;
+                }
+
+                String[] fields = line.split(",", -1);
+                if (fields.length != 4) {
+                    reject(progress, lineNumber, "expected 4 fields");
+                    continue;
+                }
+                String tank = fields[0].trim();
+                if (ambiguousTankNames.contains(tank)) {
+                    reject(progress, lineNumber, "more than one tank is named " + tank);
+                    continue;
+                }
+                Long tankId = resolve(tank, tankIds, tankIdsByName);
+                if (tankId == null) {
+                    reject(progress, lineNumber, "unknown tank " + tank);
+                    continue;
+                }
+                Long attributeId = resolve(fields[1].trim(), attributeIds, attributeIdsByName);
+                if (attributeId == null) {
+                    reject(progress, lineNumber, "unknown attribute " + fields[1].trim());
+                    continue;
+                }
+                LocalDateTime timestamp;
+                double value;
+                try {
+                    timestamp = LocalDateTime.parse(fields[2].trim().replace(' ', 'T'));
+                    value = Double.parseDouble(fields[3].trim());
+                } catch (DateTimeParseException | NumberFormatException e) {
+                    reject(progress, lineNumber, "unreadable timestamp or value");
+                    continue;
+                }
+                if (firstRetainedDay != null && timestamp.toLocalDate().isBefore(firstRetainedDay)) {
+                    reject(progress, lineNumber, "before " + firstRetainedDay + ", past the retention");
+                    continue;
+                }
+
+                chunk.add(new TankReading(tankId, attributeId, timestamp, value));
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(progress, chunk);
+                }
+            }
+            writeChunk(progress, chunk);
+        } catch (IOException | RuntimeException e) {
+            progress.setError(e.getMessage());
+            logger.error("Import {} stopped at line {}", progress.getId(), progress.getLinesRead(), e);
+        } finally {
+            progress.setFinishedAt(LocalDateTime.now());
+        }
+        return progress;
+    }
+
+    private synchronized ImportProgress register() {
+        ImportProgress progress = new ImportProgress(importIds.incrementAndGet(), LocalDateTime.now());
+        imports.addFirst(progress);
+        while (imports.size() > MAX_REMEMBERED_IMPORTS && imports.peekLast().getFinishedAt() != null) {
+            imports.removeLast();
+        }
+        return progress;
+    }
+
+    // Each chunk commits in a transaction of its own
+    private void writeChunk(ImportProgress progress, List<TankReading> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        progress.setImported(progress.getImported() + attributeValueService.saveReadings(chunk));
+        progress.setChunksCommitted(progress.getChunksCommitted() + 1);
+        chunk.clear();
+    }
+
+    private static Long resolve(String key, Set<Long> ids, Map<String, Long> idsByName) {
+        Long id = idsByName.get(key);
+        if (id != null) {
+            return id;
+        }
+        try {
+            id = Long.valueOf(key);
+            return ids.contains(id) ? id : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void reject(ImportProgress progress, long lineNumber, String reason) {
+        progress.setRejected(progress.getRejected() + 1);
+        if (progress.getRejectedLines().size() < MAX_REPORTED_REJECTIONS) {
+            progress.getRejectedLines().add("line " + lineNumber + ": " + reason);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.example.dto.TankPlacement;
+import com.example.dto.TankReading;
+import com.example.repository.TankRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+
+/**
+ * Accepts readings into a bounded in-memory queue and writes them in the background, so senders
+ * do not wait for the database.
+ * <p>
+ * The queue is split into one part per writer thread, and all readings of a tank go to the same part, so two
+ * writers never refresh the rollups of the same tank at once.
+ * Each writer takes readings off its part in batches of up to {@code fishhatchery.ingest.async.batch-size},
+ * waiting at most {@code fishhatchery.ingest.async.max-delay-ms} for a batch to fill, and inserts each batch
+ * through {@link AttributeValueService#saveReadings(java.util.Collection)}; a batch that fails is written again one
+ * tank at a time, and only the readings of tanks that still fail are dropped. When the queue cannot take a whole
+ * request it is refused, leaving the sender to retry later. On shutdown the queue is closed and drained.
+ */
+@Service
+public class ReadingIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadingIngestService.class);
+
+    /**
+     * Outcome of offering readings to the queue.
+     */
+    public enum Result {
+        ACCEPTED, QUEUE_FULL, SHUTTING_DOWN
+    }
+
+    @Autowired
+    private AttributeValueService attributeValueService;
+
+    @Autowired
+    private TankRepository tankRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${fishhatchery.ingest.async.queue-capacity:100000}")
+    private int queueCapacity;
+
+    @Value("${fishhatchery.ingest.async.writer-threads:2}")
+    private int writerThreads;
+
+    @Value("${fishhatchery.ingest.async.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${fishhatchery.ingest.async.max-delay-ms:200}")
+    private long maxDelayMillis;
+
+    @Value("${fishhatchery.ingest.async.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMillis;
+
+    private List<BlockingQueue<TankReading>> queues;
+
+    private final List<Thread> writers = new ArrayList<>();
+
+    private volatile boolean accepting = true;
+
+    private DistributionSummary batchSizes;
+    private Timer writeLatency;
+    private Counter rejected;
+    private Counter failed;
+
+    @PostConstruct
+    void createQueue() {
+        queues = new ArrayList<>(writerThreads);
+        for (int i = 0; i < writerThreads; i++) {
+            queues.add(new ArrayBlockingQueue<>(Math.max(1, queueCapacity / writerThreads)));
+        }
+        Gauge.builder("fishhatchery.ingest.queue.depth", this, ReadingIngestService::getQueueDepth)
+                .description("Readings waiting to be written")
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("fishhatchery.ingest.batch.size")
+                .description("Readings written per batch")
+                .register(meterRegistry);
+        writeLatency = Timer.builder("fishhatchery.ingest.write.latency")
+                .description("Time to write one batch, rollups included")
+                .register(meterRegistry);
+        rejected = Counter.builder("fishhatchery.ingest.rejected")
+                .description("Readings refused because the queue was full")
+                .register(meterRegistry);
+        failed = Counter.builder("fishhatchery.ingest.failed")
+                .description("Readings accepted but lost because their tank's readings could not be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts the writer threads once the application is up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWriters() {
+        for (int i = 0; i < writerThreads; i++) {
+            BlockingQueue<TankReading> queue = queues.get(i);
+            Thread writer = new Thread(() -> drain(queue), "ingest-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+    }
+
+    /**
+     * Queue readings for writing. Either all of them are queued or none.
+     *
+     * @param readings The readings, already checked for completeness.
+     * @return Whether the readings were queued, or why not.
+     * @throws EntityNotFoundException If a reading refers to a tank that does not exist.
+     */
+    public Result offer(List<TankReading> readings) {
+        // Checked again under the lock; this only saves the tank lookup
+        if (!accepting) {
+            return Result.SHUTTING_DOWN;
+        }
+        checkTanksExist(readings);
+
+        int[] needed = new int[queues.size()];
+        for (TankReading reading : readings) {
+            needed[queueIndexOf(reading)]++;
+        }
+
+        // Producers reserve room under the lock; writers only ever free it up.
+        // shutdown() clears accepting under the same lock, so nothing is queued once the writers may have stopped
+        synchronized (this) {
+            if (!accepting) {
+                return Result.SHUTTING_DOWN;
+            }
+            for (int i = 0; i < needed.length; i++) {
+                if (queues.get(i).remainingCapacity() < needed[i]) {
+                    rejected.increment(readings.size());
+                    return Result.QUEUE_FULL;
+                }
+            }
+            for (TankReading reading : readings) {
+                queues.get(queueIndexOf(reading)).add(reading);
+            }
+        }
+        return Result.ACCEPTED;
+    }
+
+    /**
+     * @return The number of readings waiting to be written.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (BlockingQueue<TankReading> queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Stops accepting readings and waits for the writers to empty the queue.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        synchronized (this) {
+            accepting = false;
+        }
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        for (Thread writer : writers) {
+            writer.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        if (getQueueDepth() > 0) {
+            logger.error("{} queued readings were not written before shutdown", getQueueDepth());
+        }
+    }
+
+    private int queueIndexOf(TankReading reading) {
+        return Math.floorMod(reading.tankId().hashCode(), queues.size());
+    }
+
+    private void drain(BlockingQueue<TankReading> queue) {
+        List<TankReading> batch = new ArrayList<>(batchSize);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                TankReading first = queue.poll(maxDelayMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Fill the batch until it is full or the oldest reading has waited long enough
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    TankReading next = remaining > 0 && accepting ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<TankReading> batch) {
+        batchSizes.record(batch.size());
+        long started = System.nanoTime();
+        try {
+            attributeValueService.saveReadings(batch);
+        } catch (RuntimeException e) {
+            logger.warn("Could not write a batch of {} readings, writing it again tank by tank", batch.size(), e);
+            writeByTank(batch);
+        } finally {
+            writeLatency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Writes a batch that failed as a whole one tank at a time, so the readings of a tank that cannot be written,
+     * such as one deleted after its readings were accepted, are the only ones lost.
+     */
+    private void writeByTank(List<TankReading> batch) {
+        Map<Long, List<TankReading>> readingsByTankId = new LinkedHashMap<>();
+        for (TankReading reading : batch) {
+            readingsByTankId.computeIfAbsent(reading.tankId(), id -> new ArrayList<>()).add(reading);
+        }
+        for (Map.Entry<Long, List<TankReading>> tank : readingsByTankId.entrySet()) {
+            try {
+                attributeValueService.saveReadings(tank.getValue());
+            } catch (RuntimeException e) {
+                failed.increment(tank.getValue().size());
+                logger.error("Dropped {} accepted readings of tank {} that could not be written", tank.getValue().size(), tank.getKey(), e);
+            }
+        }
+    }
+
+    private void checkTanksExist(List<TankReading> readings) {
+        Set<Long> tankIds = new HashSet<>();
+        for (TankReading reading : readings) {
+            tankIds.add(reading.tankId());
+        }
+        for (TankPlacement placement : tankRepository.findPlacementsByIds(tankIds)) {
+            tankIds.remove(placement.tankId());
+        }
+        if (!tankIds.isEmpty()) {
+            throw new EntityNotFoundException("Tank not found with ID: " + tankIds.iterator().next());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Splits the AttributeValue table into monthly MySQL range partitions on its timestamp, and keeps them in shape:
+ * partitions for the coming months are created ahead of time and, when a retention is configured,
+ * whole partitions older than it are dropped instead of deleting their rows one by one.
+ * <p>
+ * Range queries on the timestamp only read the partitions they cover, so repository queries keep working unchanged.
+ * Rollups are not touched, so aggregated history outlives the readings it was built from. Readings older than the
+ * retention are refused, as they would be dropped with their partition and the rollups of their day would be
+ * recomputed from the few readings written late.
+ */
+@Service
+public class ReadingPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadingPartitionService.class);
+
+    private static final String TABLE = "AttributeValue";
+    private static final String OVERFLOW_PARTITION = "pmax";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final DateTimeFormatter PARTITION_BOUND = DateTimeFormatter.ofPattern("yyyy-MM-'01 00:00:00'");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${fishhatchery.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${fishhatchery.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${fishhatchery.partitioning.retention-months:0}")
+    private int retentionMonths;
+
+    /**
+     * Partitions the table the first time the application starts with partitioning enabled.
+     * This rewrites the whole table, so expect it to take a while on a large history.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void partitionOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        if (getMonthlyPartitions().isEmpty()) {
+            partitionTable();
+        }
+        maintainPartitions();
+    }
+
+    /**
+     * Creates the partitions of the coming months and drops the ones past the retention.
+     */
+    @Scheduled(cron = "${fishhatchery.partitioning.maintenance-cron:0 30 2 * * *}")
+    public void maintainPartitions() {
+        if (!enabled) {
+            return;
+        }
+        List<YearMonth> partitions = getMonthlyPartitions();
+        if (partitions.isEmpty()) {
+            return;
+        }
+
+        // Split the overflow partition until the coming months have their own partitions
+        YearMonth lastMonth = YearMonth.now().plusMonths(monthsAhead);
+        for (YearMonth month = partitions.get(partitions.size() - 1).plusMonths(1); !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + OVERFLOW_PARTITION + " INTO ("
+                    + partitionDefinition(month) + ", "
+                    + "PARTITION " + OVERFLOW_PARTITION + " VALUES LESS THAN (MAXVALUE))");
+            logger.info("Added partition {} to {}", PARTITION_NAME.format(month), TABLE);
+        }
+
+        // Drop whole months that fell out of the retention, always keeping the current one
+        if (retentionMonths > 0) {
+            YearMonth firstKeptMonth = firstKeptMonth();
+            for (YearMonth month : partitions) {
+                if (month.isBefore(firstKeptMonth)) {
+                    jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP PARTITION " + PARTITION_NAME.format(month));
+                    logger.info("Dropped partition {} of {}", PARTITION_NAME.format(month), TABLE);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The first day whose readings are kept, or null if readings are kept forever.
+     */
+    public LocalDate getFirstRetainedDay() {
+        if (!enabled || retentionMonths <= 0) {
+            return null;
+        }
+        return firstKeptMonth().atDay(1);
+    }
+
+    /**
+     * Check that readings of the given days may still be written.
+     *
+     * @param days The days of the readings.
+     * @throws IllegalArgumentException If one of the days is older than the retention.
+     */
+    public void requireRetained(Collection<LocalDate> days) {
+        LocalDate firstRetainedDay = getFirstRetainedDay();
+        for (LocalDate day : days) {
+            if (firstRetainedDay != null && day.isBefore(firstRetainedDay)) {
+                throw new IllegalArgumentException("Readings before " + firstRetainedDay + " are past the retention of "
+                        + retentionMonths + " months and cannot be written");
+            }
+        }
+    }
+
+    // The current month counts as the first of the retention
+    private YearMonth firstKeptMonth() {
+        return YearMonth.now().minusMonths(retentionMonths - 1);
+    }
+
+    /**
+     * Turns the plain table into a table with one partition per month, from its oldest reading up to the coming months.
+     * MySQL does not allow foreign keys on partitioned tables, which {@link ReadingSchemaService} has already dropped,
+     * and wants the partitioning column in the primary key, so that is adjusted first.
+     */
+    private void partitionTable() {
+        logger.info("Partitioning {} by month", TABLE);
+
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " MODIFY `timestamp` DATETIME(6) NOT NULL, "
+                + "DROP PRIMARY KEY, ADD PRIMARY KEY (id, `timestamp`)");
+
+        LocalDateTime oldest = jdbcTemplate.queryForObject("SELECT MIN(`timestamp`) FROM " + TABLE, LocalDateTime.class);
+        YearMonth firstMonth = oldest == null ? YearMonth.now() : YearMonth.from(oldest);
+        YearMonth lastMonth = YearMonth.now().plusMonths(monthsAhead);
+
+        StringBuilder ddl = new StringBuilder("ALTER TABLE " + TABLE + " PARTITION BY RANGE COLUMNS(`timestamp`) (");
+        for (YearMonth month = firstMonth; !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            ddl.append(partitionDefinition(month)).append(", ");
+        }
+        ddl.append("PARTITION ").append(OVERFLOW_PARTITION).append(" VALUES LESS THAN (MAXVALUE))");
+        jdbcTemplate.execute(ddl.toString());
+
+        logger.info("Partitioned {} from {} to {}", TABLE, firstMonth, lastMonth);
+    }
+
+    /**
+     * Months that currently have their own partition, oldest first.
+     */
+    private List<YearMonth> getMonthlyPartitions() {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+                        + "ORDER BY PARTITION_ORDINAL_POSITION",
+                String.class, TABLE);
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : names) {
+            if (!OVERFLOW_PARTITION.equals(name)) {
+                months.add(YearMonth.parse(name, PARTITION_NAME));
+            }
+        }
+        return months;
+    }
+
+    private String partitionDefinition(YearMonth month) {
+        return "PARTITION " + PARTITION_NAME.format(month) + " VALUES LESS THAN ('" + PARTITION_BOUND.format(month.plusMonths(1)) + "')";
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.service;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Brings the AttributeValue table of older databases in line with its mapping.
+ * <p>
+ * AttributeValue used to have foreign keys to Tank and Attribute. The mapping no longer declares them, but
+ * {@code ddl-auto=update} never drops a constraint, so databases created before that keep them. Deleting a tank
+ * leaves its readings to {@link PurgeService} and would then fail on the old constraint, so every foreign key of
+ * the table is dropped at startup, before the first request.
+ */
+@Service
+public class ReadingSchemaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadingSchemaService.class);
+
+    private static final String TABLE = "AttributeValue";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Injected so the schema update has run before the constraints are looked up
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void dropForeignKeys() {
+        List<String> foreignKeys = jdbcTemplate.queryForList(
+                "SELECT CONSTRAINT_NAME FROM information_schema.TABLE_CONSTRAINTS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND CONSTRAINT_TYPE = 'FOREIGN KEY'",
+                String.class, TABLE);
+        for (String foreignKey : foreignKeys) {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP FOREIGN KEY " + foreignKey);
+            logger.info("Dropped foreign key {} of {}", foreignKey, TABLE);
+        }
+    }
+}
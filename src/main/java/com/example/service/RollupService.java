@@ -0,0 +1,259 @@
+package com.example.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.cache.DailyAverageCache;
+import com.example.cache.DataVersions;
+import com.example.dto.BucketAggregate;
+import com.example.entity.AttributeRollup;
+import com.example.entity.AttributeValue;
+import com.example.entity.RollupResolution;
+import com.example.event.ReadingsChangedEvent;
+import com.example.repository.AttributeRollupRepository;
+import com.example.repository.AttributeValueRepository;
+import com.example.repository.TankRepository;
+
+/**
+ * Maintains the hourly, daily, weekly and monthly rollups that the analytics queries read from.
+ * Hourly rollups are aggregated from the attribute values, daily ones from the hourly ones,
+ * and weekly and monthly ones from the daily ones.
+ */
+@Service
+public class RollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollupService.class);
+
+    private static final Set<RollupResolution> HOURLY_AND_DAILY = EnumSet.of(RollupResolution.HOUR, RollupResolution.DAY);
+
+    @Autowired
+    private AttributeRollupRepository attributeRollupRepository;
+
+    @Autowired
+    private AttributeValueRepository attributeValueRepository;
+
+    @Autowired
+    private TankRepository tankRepository;
+
+    // Rebuilds lock tanks like the write paths, and then must see what those committed
+    private TransactionTemplate readCommittedTransaction;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private DailyAverageCache dailyAverageCache;
+
+    @Autowired
+    private DataVersions dataVersions;
+
+    @Autowired
+    private ReadingPartitionService readingPartitionService;
+
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        readCommittedTransaction = new TransactionTemplate(transactionManager);
+        readCommittedTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    /**
+     * Recomputes the rollups of the tanks and days touched by a list of attribute values, tanks in ascending ID order.
+     * Must run in the transaction that wrote the values.
+     *
+     * @param attributeValues The attribute values that were written.
+     */
+    @Transactional
+    public void refreshRollups(List<AttributeValue> attributeValues) {
+        Map<Long, Set<LocalDate>> daysByTankId = new TreeMap<>();
+        for (AttributeValue attributeValue : attributeValues) {
+            if (attributeValue.getTank() == null || attributeValue.getTimestamp() == null) {
+                continue;
+            }
+            daysByTankId.computeIfAbsent(attributeValue.getTank().getId(), id -> new TreeSet<>())
+                    .add(attributeValue.getTimestamp().toLocalDate());
+        }
+        daysByTankId.forEach(this::refreshRollups);
+    }
+
+    /**
+     * Recomputes the rollups of a tank for the given days, and the weeks and months they belong to.
+     * Must run in the transaction that wrote the values. Every write path goes through here,
+     * so this is also where the change is announced to the in-memory stores.
+     * <p>
+     * The tank's row is locked until the transaction ends, so refreshes of one tank run one after the other instead
+     * of deleting and inserting the same rollups at once. Writers run with {@link Isolation#READ_COMMITTED}, so a
+     * refresh that waited for the lock aggregates the readings the other writer committed as well. Writers touching
+     * several tanks refresh them in ascending ID order, so they cannot deadlock on each other.
+     * <p>
+     * Days past the retention are refused, which rolls the write back: their other readings are gone, and their
+     * rollups must not be recomputed from the late ones alone.
+     *
+     * @param tankId The ID of the tank.
+     * @param days   The days whose attribute values changed.
+     * @throws IllegalArgumentException If one of the days is older than the retention.
+     */
+    @Transactional
+    public void refreshRollups(Long tankId, Collection<LocalDate> days) {
+        readingPartitionService.requireRetained(days);
+        tankRepository.findByIdForUpdate(tankId);
+        for (LocalDate day : new TreeSet<>(days)) {
+            refreshHourlyAndDailyRollups(tankId, day, day);
+        }
+        refreshWeeklyAndMonthlyRollups(tankId, days);
+        eventPublisher.publishEvent(new ReadingsChangedEvent(tankId, new TreeSet<>(days)));
+    }
+
+    /**
+     * Rebuilds the rollups of every tank from the full attribute value history.
+     * Each tank is processed one month at a time, in its own transaction.
+     *
+     * @return The number of tanks processed and rollups written.
+     */
+    public Map<String, Object> rebuildRollups() {
+        List<Long> tankIds = tankRepository.findAllIds();
+        long rollupCount = 0;
+
+        for (Long tankId : tankIds) {
+            LocalDateTime first = attributeValueRepository.findFirstTimestampInTank(tankId);
+            LocalDateTime last = attributeValueRepository.findLastTimestampInTank(tankId);
+
+            if (first == null) {
+                continue;
+            }
+
+            // Drop the rollups from the first remaining reading on, then rebuild month by month.
+            // Older rollups are kept: they may outlive readings dropped by the partition retention.
+            LocalDate month = first.toLocalDate().withDayOfMonth(1);
+            LocalDateTime rebuildStart = month.atStartOfDay();
+            LocalDateTime rebuildEnd = last.toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay();
+            readCommittedTransaction.executeWithoutResult(status -> {
+                tankRepository.findByIdForUpdate(tankId);
+                attributeRollupRepository.deleteByTankIdAndBucketStartBetween(tankId, EnumSet.allOf(RollupResolution.class), rebuildStart, rebuildEnd);
+            });
+            while (!month.isAfter(last.toLocalDate())) {
+                LocalDate startDate = month;
+                LocalDate endDate = month.plusMonths(1).minusDays(1);
+                rollupCount += readCommittedTransaction.execute(status -> {
+                    // Same lock as the write paths, so a write to this month waits for the month to be rebuilt
+                    tankRepository.findByIdForUpdate(tankId);
+                    int count = refreshHourlyAndDailyRollups(tankId, startDate, endDate);
+                    return count + refreshWeeklyAndMonthlyRollups(tankId, startDate.datesUntil(endDate.plusDays(1)).toList());
+                });
+                month = month.plusMonths(1);
+            }
+            logger.info("Rebuilt rollups of tank {}", tankId);
+        }
+
+        dailyAverageCache.clear();
+        dataVersions.advanceAll();
+        Map<String, Object> result = new HashMap<>();
+        result.put("tanks", tankIds.size());
+        result.put("rollups", rollupCount);
+        return result;
+    }
+
+    /**
+     * Replaces the hourly and daily rollups of a tank between two days with freshly aggregated ones.
+     *
+     * @return The number of rollups written.
+     */
+    private int refreshHourlyAndDailyRollups(Long tankId, LocalDate startDate, LocalDate endDate) {
+        LocalDateTime start = startDate.atStartOfDay();
+        LocalDateTime end = endDate.plusDays(1).atStartOfDay();
+        attributeRollupRepository.deleteByTankIdAndBucketStartBetween(tankId, HOURLY_AND_DAILY, start, end);
+
+        List<BucketAggregate> hourlyAggregates = attributeValueRepository.findHourlyRollupAggregatesInTank(tankId, start, end);
+
+        List<AttributeRollup> rollups = new ArrayList<>();
+        Map<Long, Map<LocalDateTime, AttributeRollup>> dailyRollupsByAttributeId = new LinkedHashMap<>();
+        for (BucketAggregate aggregate : hourlyAggregates) {
+            // Values saved without an attribute never show up in any average
+            if (aggregate.getAttributeId() == null) {
+                continue;
+            }
+            rollups.add(createRollup(tankId, RollupResolution.HOUR, aggregate.getBucketStart(), aggregate));
+
+            // Fold the hour into its day
+            LocalDateTime day = RollupResolution.DAY.truncate(aggregate.getBucketStart());
+            Map<LocalDateTime, AttributeRollup> dailyRollups = dailyRollupsByAttributeId.computeIfAbsent(aggregate.getAttributeId(), id -> new LinkedHashMap<>());
+            AttributeRollup dailyRollup = dailyRollups.get(day);
+            if (dailyRollup == null) {
+                dailyRollups.put(day, createRollup(tankId, RollupResolution.DAY, day, aggregate));
+            } else {
+                dailyRollup.setValueSum(dailyRollup.getValueSum() + aggregate.getSum());
+                dailyRollup.setValueCount(dailyRollup.getValueCount() + aggregate.getCount());
+                dailyRollup.setValueMin(Math.min(dailyRollup.getValueMin(), aggregate.getMin()));
+                dailyRollup.setValueMax(Math.max(dailyRollup.getValueMax(), aggregate.getMax()));
+            }
+        }
+        for (Map<LocalDateTime, AttributeRollup> dailyRollups : dailyRollupsByAttributeId.values()) {
+            rollups.addAll(dailyRollups.values());
+        }
+        attributeRollupRepository.saveAll(rollups);
+
+        return rollups.size();
+    }
+
+    /**
+     * Replaces the weekly and monthly rollups of a tank that contain any of the given days,
+     * combining the daily rollups that were already refreshed.
+     *
+     * @return The number of rollups written.
+     */
+    private int refreshWeeklyAndMonthlyRollups(Long tankId, Collection<LocalDate> days) {
+        int count = 0;
+        for (RollupResolution resolution : EnumSet.of(RollupResolution.WEEK, RollupResolution.MONTH)) {
+            Set<LocalDateTime> bucketStarts = new TreeSet<>();
+            for (LocalDate day : days) {
+                bucketStarts.add(resolution.truncate(day.atStartOfDay()));
+            }
+
+            for (LocalDateTime bucketStart : bucketStarts) {
+                LocalDateTime bucketEnd = resolution.next(bucketStart);
+                attributeRollupRepository.deleteByTankIdAndBucketStartBetween(tankId, EnumSet.of(resolution), bucketStart, bucketEnd);
+
+                List<AttributeRollup> rollups = new ArrayList<>();
+                for (BucketAggregate aggregate : attributeRollupRepository.combineDailyRollupsInTank(tankId, bucketStart, bucketEnd)) {
+                    rollups.add(createRollup(tankId, resolution, bucketStart, aggregate));
+                }
+                attributeRollupRepository.saveAll(rollups);
+                count += rollups.size();
+            }
+        }
+        return count;
+    }
+
+    private AttributeRollup createRollup(Long tankId, RollupResolution resolution, LocalDateTime bucketStart, BucketAggregate aggregate) {
+        AttributeRollup rollup = new AttributeRollup();
+        rollup.setTankId(tankId);
+        rollup.setAttributeId(aggregate.getAttributeId());
+        rollup.setResolution(resolution);
+        rollup.setBucketStart(bucketStart);
+        rollup.setValueSum(aggregate.getSum());
+        rollup.setValueCount(aggregate.getCount());
+        rollup.setValueMin(aggregate.getMin());
+        rollup.setValueMax(aggregate.getMax());
+        return rollup;
+    }
+}
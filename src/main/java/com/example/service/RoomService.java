@@ -1,18 +1,48 @@
 package com.example.service;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.example.cache.HierarchyStore;
+import com.example.dto.CursorPage;
+import com.example.dto.HierarchySummary;
+import com.example.dto.RoomNode;
+import com.example.dto.PageCursor;
 import com.example.entity.Room;
+import com.example.entity.TankPurge;
+import com.example.event.HierarchyChangedEvent;
+import com.example.repository.HierarchyBatchWriter;
 import com.example.repository.RoomRepository;
+import com.example.repository.TankRepository;
 
 @Service
 public class RoomService {
 	
     @Autowired
     private RoomRepository roomRepository;
+    
+    @Autowired
+    private TankRepository tankRepository;
+
+    @Autowired
+    private HierarchyBatchWriter hierarchyBatchWriter;
+
+    @Autowired
+    private PurgeService purgeService;
+
+    @Autowired
+    private HierarchyStore hierarchyStore;
+
+    @Autowired
+    private PageLimits pageLimits;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     public List<Room> getAllRooms() {
         return roomRepository.findAll();
@@ -22,11 +52,87 @@ public class RoomService {
         return roomRepository.findById(id).orElse(null);
     }
 
+    /**
+     * @return Every room with its tanks, from the hierarchy snapshot.
+     */
+    public List<RoomNode> getRoomNodes() {
+        return hierarchyStore.get().getRooms();
+    }
+
+    /**
+     * @param cursor The next cursor of the previous page, or null for the first page.
+     * @param limit  The largest number of rooms on the page, or null for the default page size.
+     * @return A page of rooms in ID order, from the hierarchy snapshot.
+     * @throws IllegalArgumentException If the cursor or the limit is not valid.
+     */
+    public CursorPage<RoomNode> getRoomNodes(String cursor, Integer limit) {
+        int pageSize = pageLimits.resolve(limit);
+        Long afterId = cursor != null ? PageCursor.decode(cursor).id() : null;
+        List<RoomNode> rooms = hierarchyStore.get().getRoomsAfter(afterId, pageSize + 1);
+        return CursorPage.of(rooms, pageSize, room -> PageCursor.after(room.id()));
+    }
+
+    /**
+     * @param id The ID of the room.
+     * @return The room with its tanks from the hierarchy snapshot, or null if there is none with this ID.
+     */
+    public RoomNode getRoomNodeById(Long id) {
+        return hierarchyStore.get().getRoom(id);
+    }
+
+    /**
+     * @return Every room without its children, from the hierarchy snapshot.
+     */
+    public List<HierarchySummary> getRoomSummaries() {
+        List<RoomNode> rooms = hierarchyStore.get().getRooms();
+        List<HierarchySummary> summaries = new ArrayList<>(rooms.size());
+        for (RoomNode room : rooms) {
+            summaries.add(HierarchySummary.of(room));
+        }
+        return summaries;
+    }
+
+    /**
+     * @param cursor The next cursor of the previous page, or null for the first page.
+     * @param limit  The largest number of rooms on the page, or null for the default page size.
+     * @return A page of rooms without their children in ID order, from the hierarchy snapshot.
+     * @throws IllegalArgumentException If the cursor or the limit is not valid.
+     */
+    public CursorPage<HierarchySummary> getRoomSummaries(String cursor, Integer limit) {
+        return getRoomNodes(cursor, limit).map(HierarchySummary::of);
+    }
+
+    /**
+     * @param id The ID of the room.
+     * @return The room without its children from the hierarchy snapshot, or null if there is none with this ID.
+     */
+    public HierarchySummary getRoomSummaryById(Long id) {
+        RoomNode room = hierarchyStore.get().getRoom(id);
+        return room != null ? HierarchySummary.of(room) : null;
+    }
+
     public Room saveRoom(Room room) {
-        return roomRepository.save(room);
+        Room savedRoom = roomRepository.save(room);
+        eventPublisher.publishEvent(new HierarchyChangedEvent());
+        return savedRoom;
     }
 
-    public void deleteRoom(Long id) {
-        roomRepository.deleteById(id);
+    /**
+     * Delete a room and its tanks. They are gone once this returns; the attribute values and rollups of the tanks
+     * are purged in the background.
+     * @param id The ID of the room.
+     * @return The purges of the tanks' attribute values, or null if there is no room with this ID.
+     */
+    @Transactional
+    public List<TankPurge> deleteRoom(Long id) {
+        if (!roomRepository.existsById(id)) {
+            return null;
+        }
+        List<Long> tankIds = tankRepository.findIdsByRoomId(id);
+        List<TankPurge> purges = purgeService.schedule(tankIds);
+        hierarchyBatchWriter.deleteByIds("Tank", "id", tankIds);
+        hierarchyBatchWriter.deleteByIds("Room", "id", List.of(id));
+        eventPublisher.publishEvent(new HierarchyChangedEvent());
+        return purges;
     }
 }
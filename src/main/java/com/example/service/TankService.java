@@ -1,18 +1,37 @@
 package com.example.service;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.cache.AttributeCatalogue;
+import com.example.cache.HierarchyStore;
+import com.example.dto.AttributeReading;
 import com.example.dto.AttributeValueRequest;
-import com.example.entity.Attribute;
-import com.example.entity.AttributeValue;
+import com.example.dto.StoredReading;
+import com.example.dto.CursorPage;
+import com.example.dto.HierarchySummary;
+import com.example.dto.TankNode;
+import com.example.dto.PageCursor;
+import com.example.dto.TankReading;
 import com.example.entity.Tank;
+import com.example.entity.TankPurge;
+import com.example.event.HierarchyChangedEvent;
+import com.example.repository.AttributeValueBatchWriter;
 import com.example.repository.AttributeValueRepository;
+import com.example.repository.HierarchyBatchWriter;
 import com.example.repository.TankRepository;
 
 import jakarta.persistence.EntityNotFoundException;
@@ -24,10 +43,31 @@ public class TankService {
     private TankRepository tankRepository;
 	
 	@Autowired
-	private AttributeService attributeService;
+	private AttributeCatalogue attributeCatalogue;
 	
 	@Autowired
 	private AttributeValueRepository attributeValueRepository;
+	
+	@Autowired
+	private RollupService rollupService;
+	
+	@Autowired
+	private AttributeValueBatchWriter attributeValueBatchWriter;
+	
+	@Autowired
+	private HierarchyBatchWriter hierarchyBatchWriter;
+	
+	@Autowired
+	private PurgeService purgeService;
+	
+	@Autowired
+	private HierarchyStore hierarchyStore;
+	
+	@Autowired
+	private PageLimits pageLimits;
+	
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
 
     public List<Tank> getAllTanks() {
         return tankRepository.findAll();
@@ -37,12 +77,85 @@ public class TankService {
         return tankRepository.findById(id).orElse(null);
     }
 
+    /**
+     * @return Every tank, from the hierarchy snapshot.
+     */
+    public List<TankNode> getTankNodes() {
+        return hierarchyStore.get().getTanks();
+    }
+
+    /**
+     * @param cursor The next cursor of the previous page, or null for the first page.
+     * @param limit  The largest number of tanks on the page, or null for the default page size.
+     * @return A page of tanks in ID order, from the hierarchy snapshot.
+     * @throws IllegalArgumentException If the cursor or the limit is not valid.
+     */
+    public CursorPage<TankNode> getTankNodes(String cursor, Integer limit) {
+        int pageSize = pageLimits.resolve(limit);
+        Long afterId = cursor != null ? PageCursor.decode(cursor).id() : null;
+        List<TankNode> tanks = hierarchyStore.get().getTanksAfter(afterId, pageSize + 1);
+        return CursorPage.of(tanks, pageSize, tank -> PageCursor.after(tank.id()));
+    }
+
+    /**
+     * @param id The ID of the tank.
+     * @return The tank from the hierarchy snapshot, or null if there is none with this ID.
+     */
+    public TankNode getTankNodeById(Long id) {
+        return hierarchyStore.get().getTank(id);
+    }
+
+    /**
+     * @return Every tank without its children, from the hierarchy snapshot.
+     */
+    public List<HierarchySummary> getTankSummaries() {
+        List<TankNode> tanks = hierarchyStore.get().getTanks();
+        List<HierarchySummary> summaries = new ArrayList<>(tanks.size());
+        for (TankNode tank : tanks) {
+            summaries.add(HierarchySummary.of(tank));
+        }
+        return summaries;
+    }
+
+    /**
+     * @param cursor The next cursor of the previous page, or null for the first page.
+     * @param limit  The largest number of tanks on the page, or null for the default page size.
+     * @return A page of tanks without their children in ID order, from the hierarchy snapshot.
+     * @throws IllegalArgumentException If the cursor or the limit is not valid.
+     */
+    public CursorPage<HierarchySummary> getTankSummaries(String cursor, Integer limit) {
+        return getTankNodes(cursor, limit).map(HierarchySummary::of);
+    }
+
+    /**
+     * @param id The ID of the tank.
+     * @return The tank without its children from the hierarchy snapshot, or null if there is none with this ID.
+     */
+    public HierarchySummary getTankSummaryById(Long id) {
+        TankNode tank = hierarchyStore.get().getTank(id);
+        return tank != null ? HierarchySummary.of(tank) : null;
+    }
+
     public Tank saveTank(Tank tank) {
-        return tankRepository.save(tank);
+        Tank savedTank = tankRepository.save(tank);
+        eventPublisher.publishEvent(new HierarchyChangedEvent());
+        return savedTank;
     }
 
-    public void deleteTank(Long id) {
-        tankRepository.deleteById(id);
+    /**
+     * Delete a tank. The tank is gone once this returns; its attribute values and rollups are purged in the background.
+     * @param id The ID of the tank.
+     * @return The purge of the tank's attribute values, or null if there is no tank with this ID.
+     */
+    @Transactional
+    public TankPurge deleteTank(Long id) {
+        if (!tankRepository.existsById(id)) {
+            return null;
+        }
+        List<TankPurge> purges = purgeService.schedule(List.of(id));
+        hierarchyBatchWriter.deleteByIds("Tank", "id", List.of(id));
+        eventPublisher.publishEvent(new HierarchyChangedEvent());
+        return purges.get(0);
     }
     
 
@@ -117,52 +230,94 @@ public class TankService {
     
     /**
      * Save or update attribute values for a tank and remove values not present in the JSON request for a specific date.
+     * The submission is compared with the day's stored values by attribute and timestamp, and only what differs
+     * is inserted, updated or deleted. Values with a timestamp outside the day are added as they are.
      *
      * @param tankId                  The ID of the tank to which attribute values belong.
      * @param attributeValueRequests  A list of attribute value requests to save or update.
      * @param specificDate            The specific date for which to remove attribute values not in the request.
-     * @return                        The tank entity after saving or updating attribute values.
-     * @throws EntityNotFoundException If the tank with the given ID is not found.
+     * @return                        The tank's attribute values on that date after the change.
+     * @throws EntityNotFoundException If the tank with the given ID is not found, or a request names an unknown attribute.
+     * @throws IllegalArgumentException If a request has no timestamp or is older than the retention.
      */
-    @Transactional
-    public Tank saveAttributeValuesToTankWithDate(Long tankId, List<AttributeValueRequest> attributeValueRequests, LocalDate specificDate) {
-        // Find the tank by its ID or return null if not found
-        Tank tank = tankRepository.findById(tankId).orElse(null);
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<AttributeReading> saveAttributeValuesToTankWithDate(Long tankId, List<AttributeValueRequest> attributeValueRequests, LocalDate specificDate) {
+        // Find and lock the tank, so concurrent submissions for it are compared one after the other
+        Tank tank = tankRepository.findByIdForUpdate(tankId).orElse(null);
 
         // Throw an exception if the tank is not found
         if (tank == null) {
             throw new EntityNotFoundException("Tank not found with ID: " + tankId);
         }
 
-        // Lists to store attribute values to be added, updated, and removed
-        List<AttributeValue> attributeValuesToAdd = new ArrayList<>();
-
-        // Iterate through the attribute value requests
+        // Reject the whole submission if any attribute ID is missing or unknown, or a timestamp is missing
+        Set<Long> attributeIds = new HashSet<>();
         for (AttributeValueRequest request : attributeValueRequests) {
-            // Attribute ID validation
-            Attribute attribute = attributeService.getAttributeById(request.getAttributeId());
+            if (request.getTimestamp() == null) {
+                throw new IllegalArgumentException("Every attribute value needs a timestamp");
+            }
+            attributeIds.add(request.getAttributeId());
+        }
+        attributeCatalogue.requireAll(attributeIds);
 
+        LocalDateTime dayStart = specificDate.atStartOfDay();
+        LocalDateTime dayEnd = specificDate.plusDays(1).atStartOfDay();
 
-                // Create a new attribute value and add it to the list of values to be added
-                AttributeValue attributeValue = new AttributeValue();
-                attributeValue.setTank(tank);
-                attributeValue.setAttribute(attribute);
-                attributeValue.setTimestamp(request.getTimestamp());
-                attributeValue.setValue(request.getValue());
+        // The submitted values of the day by attribute and timestamp, the last one winning; others are added as they are
+        Map<ReadingKey, Double> submittedValues = new HashMap<>();
+        List<TankReading> readingsToAdd = new ArrayList<>();
+        for (AttributeValueRequest request : attributeValueRequests) {
+            // Stored timestamps have microsecond precision, so finer submitted ones would never match them
+            LocalDateTime timestamp = request.getTimestamp().truncatedTo(ChronoUnit.MICROS);
+            if (timestamp.isBefore(dayStart) || !timestamp.isBefore(dayEnd)) {
+                readingsToAdd.add(new TankReading(tank.getId(), request.getAttributeId(), timestamp, request.getValue()));
+            } else {
+                submittedValues.put(new ReadingKey(request.getAttributeId(), timestamp), request.getValue());
+            }
+        }
 
-                attributeValuesToAdd.add(attributeValue);
-            } 
+        // Compare with the stored values of the day, found by timestamp range rather than by DATE()
+        Map<Long, Double> valuesToUpdate = new HashMap<>();
+        List<Long> idsToDelete = new ArrayList<>();
+        Set<ReadingKey> storedKeys = new HashSet<>();
+        for (StoredReading stored : attributeValueRepository.findStoredReadingsInTankBetween(tank.getId(), dayStart, dayEnd)) {
+            ReadingKey key = new ReadingKey(stored.attributeId(), stored.timestamp());
+            Double submittedValue = submittedValues.get(key);
+            if (submittedValue == null || !storedKeys.add(key)) {
+                // Not submitted any more, or a second copy of the same reading
+                idsToDelete.add(stored.id());
+            } else if (Double.compare(submittedValue, stored.value()) != 0) {
+                valuesToUpdate.put(stored.id(), submittedValue);
+            }
+        }
+        for (Map.Entry<ReadingKey, Double> submitted : submittedValues.entrySet()) {
+            if (!storedKeys.contains(submitted.getKey())) {
+                ReadingKey key = submitted.getKey();
+                readingsToAdd.add(new TankReading(tank.getId(), key.attributeId(), key.timestamp(), submitted.getValue()));
+            }
+        }
 
-       
+        // Apply only the differences, in JDBC batches rather than through the tank's collection
+        attributeValueBatchWriter.delete(idsToDelete);
+        attributeValueBatchWriter.updateValues(valuesToUpdate);
+        attributeValueBatchWriter.insert(readingsToAdd);
 
-        // Remove attribute values not present in the JSON request for the specific date
-        attributeValueRepository.deleteAttributeValuesByTankAndDate(tank, specificDate);
+        // Recompute the rollups of the day and of every day a value was added on, if anything changed
+        if (!idsToDelete.isEmpty() || !valuesToUpdate.isEmpty() || !readingsToAdd.isEmpty()) {
+            Set<LocalDate> touchedDays = new HashSet<>();
+            touchedDays.add(specificDate);
+            for (TankReading reading : readingsToAdd) {
+                touchedDays.add(reading.timestamp().toLocalDate());
+            }
+            rollupService.refreshRollups(tank.getId(), touchedDays);
+        }
 
-        // Add attribute values to the tank
-        tank.getAttributeValues().addAll(attributeValuesToAdd);
+        // The range query is inclusive; readings are stored with microsecond precision
+        return attributeValueRepository.findReadingsByTankAndTimestampBetween(tank.getId(), dayStart, dayEnd.minusNanos(1_000));
+    }
 
-        // Save the tank with the updated attribute values and return it
-        return tankRepository.save(tank);
+    // Identifies a reading of the tank being written
+    private record ReadingKey(Long attributeId, LocalDateTime timestamp) {
     }
 
 
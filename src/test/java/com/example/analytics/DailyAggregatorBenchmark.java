@@ -0,0 +1,124 @@
+package com.example.analytics;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.analytics.DailyAggregator.Statistic;
+import com.example.entity.AttributeValue;
+
+/**
+ * Compares {@link DailyAggregator} with the boxed HashMaps it replaced, for one attribute of one tank read every
+ * minute over the requested range. Not run by the build; run it with the GC profiler after {@code mvn test-compile}:
+ *
+ * <pre>
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.example.analytics.DailyAggregatorBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DailyAggregatorBenchmark {
+
+    private static final LocalDate START_DATE = LocalDate.of(2023, 1, 1);
+
+    @Param({ "7", "30" })
+    private int days;
+
+    private LocalDate endDate;
+
+    // The readings as the database returns them
+    private List<AttributeValue> attributeValues;
+
+    // The readings as the hot window holds them
+    private long[] epochSeconds;
+    private double[] values;
+
+    @Setup
+    public void createReadings() {
+        endDate = START_DATE.plusDays(days - 1);
+        int readings = days * 24 * 60;
+        attributeValues = new ArrayList<>(readings);
+        epochSeconds = new long[readings];
+        values = new double[readings];
+        Random random = new Random(42);
+        LocalDateTime timestamp = START_DATE.atStartOfDay();
+        for (int i = 0; i < readings; i++) {
+            AttributeValue attributeValue = new AttributeValue();
+            attributeValue.setTimestamp(timestamp);
+            attributeValue.setValue(20 + random.nextGaussian());
+            attributeValues.add(attributeValue);
+            epochSeconds[i] = timestamp.toEpochSecond(ZoneOffset.UTC);
+            values[i] = attributeValue.getValue();
+            timestamp = timestamp.plusMinutes(1);
+        }
+    }
+
+    /**
+     * The daily averages as AttributeValueService computed them before DailyAggregator.
+     */
+    @Benchmark
+    public Map<LocalDate, Double> boxedMaps() {
+        Map<LocalDate, Double> dailySums = new HashMap<>();
+        Map<LocalDate, Integer> dailyCounts = new HashMap<>();
+        for (AttributeValue attrValue : attributeValues) {
+            LocalDate date = attrValue.getTimestamp().toLocalDate();
+            dailySums.merge(date, attrValue.getValue(), Double::sum);
+            dailyCounts.merge(date, 1, Integer::sum);
+        }
+        Map<LocalDate, Double> dailyAverages = new HashMap<>();
+        for (Map.Entry<LocalDate, Double> entry : dailySums.entrySet()) {
+            dailyAverages.put(entry.getKey(), entry.getValue() / dailyCounts.get(entry.getKey()));
+        }
+        return dailyAverages;
+    }
+
+    @Benchmark
+    public Map<LocalDate, Double> dailyAggregatorOverEntities() {
+        DailyAggregator aggregator = new DailyAggregator(START_DATE, endDate);
+        for (AttributeValue attributeValue : attributeValues) {
+            aggregator.add(attributeValue.getTimestamp().toLocalDate().toEpochDay(), attributeValue.getValue());
+        }
+        return aggregator.toMap(Statistic.MEAN);
+    }
+
+    @Benchmark
+    public Map<LocalDate, Double> dailyAggregatorOverArrays() {
+        DailyAggregator aggregator = new DailyAggregator(START_DATE, endDate);
+        aggregator.addAll(epochSeconds, values, 0, values.length);
+        return aggregator.toMap(Statistic.MEAN);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DailyAggregatorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
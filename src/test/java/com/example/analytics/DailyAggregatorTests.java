@@ -0,0 +1,33 @@
+package com.example.analytics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.analytics.DailyAggregator.Statistic;
+
+class DailyAggregatorTests {
+
+	private static final LocalDate START_DATE = LocalDate.of(2020, 1, 1);
+
+	@Test
+	void coversUpToMaxDays() {
+		LocalDate lastDay = START_DATE.plusDays(DailyAggregator.MAX_DAYS - 1);
+
+		assertThat(DailyAggregator.isSupportedRange(START_DATE, lastDay)).isTrue();
+		DailyAggregator aggregator = new DailyAggregator(START_DATE, lastDay);
+		aggregator.add(lastDay.toEpochDay(), 4);
+		assertThat(aggregator.toMap(Statistic.MEAN)).containsEntry(lastDay, 4.0);
+	}
+
+	@Test
+	void refusesLongerRanges() {
+		LocalDate lastDay = START_DATE.plusDays(DailyAggregator.MAX_DAYS);
+
+		assertThat(DailyAggregator.isSupportedRange(START_DATE, lastDay)).isFalse();
+		assertThatIllegalArgumentException().isThrownBy(() -> new DailyAggregator(START_DATE, lastDay));
+	}
+}
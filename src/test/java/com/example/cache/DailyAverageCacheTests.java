@@ -0,0 +1,123 @@
+package com.example.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.cache.DailyAverageCache.Scope;
+import com.example.dto.RoomNode;
+import com.example.dto.TankNode;
+import com.example.event.ReadingsChangedEvent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checks which results a write drops and that results computed across a write are not kept.
+ */
+class DailyAverageCacheTests {
+
+	private static final Long ATTRIBUTE_ID = 5L;
+
+	// Tanks 1 and 2 sit in rooms 10 and 20 of department 100
+	private static final Long TANK_ID = 1L;
+	private static final Long ROOM_ID = 10L;
+	private static final Long OTHER_TANK_ID = 2L;
+	private static final Long OTHER_ROOM_ID = 20L;
+	private static final Long DEPARTMENT_ID = 100L;
+
+	private static final LocalDate DAY = LocalDate.of(2023, 6, 15);
+
+	private DailyAverageCache dailyAverageCache;
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() {
+		HierarchySnapshot hierarchy = mock(HierarchySnapshot.class);
+		when(hierarchy.getTank(TANK_ID)).thenReturn(new TankNode(TANK_ID, "Tank 1", ROOM_ID));
+		when(hierarchy.getTank(OTHER_TANK_ID)).thenReturn(new TankNode(OTHER_TANK_ID, "Tank 2", OTHER_ROOM_ID));
+		when(hierarchy.getRoom(ROOM_ID)).thenReturn(new RoomNode(ROOM_ID, "Room 10", DEPARTMENT_ID, List.of()));
+		when(hierarchy.getRoom(OTHER_ROOM_ID)).thenReturn(new RoomNode(OTHER_ROOM_ID, "Room 20", DEPARTMENT_ID, List.of()));
+		HierarchyStore hierarchyStore = mock(HierarchyStore.class);
+		when(hierarchyStore.get()).thenReturn(hierarchy);
+
+		dailyAverageCache = new DailyAverageCache();
+		ReflectionTestUtils.setField(dailyAverageCache, "hierarchyStore", hierarchyStore);
+		ReflectionTestUtils.setField(dailyAverageCache, "attributeCatalogue", mock(AttributeCatalogue.class));
+		ReflectionTestUtils.setField(dailyAverageCache, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(dailyAverageCache, "enabled", true);
+		ReflectionTestUtils.setField(dailyAverageCache, "maxEntries", 100);
+		ReflectionTestUtils.setField(dailyAverageCache, "maxWeight", 10_000L);
+		dailyAverageCache.registerMeters();
+	}
+
+	@Test
+	void writeDropsTheResultsOfItsTankRoomAndDepartmentThatCoverTheDay() {
+		assertThat(loads(Scope.TANK, TANK_ID, DAY.minusDays(1), DAY.plusDays(1))).isOne();
+		assertThat(loads(Scope.TANK, TANK_ID, DAY.plusDays(1), DAY.plusDays(5))).isOne();
+		assertThat(loads(Scope.ROOM, ROOM_ID, DAY, DAY)).isOne();
+		assertThat(loadsByAttribute(Scope.DEPARTMENT, DEPARTMENT_ID, DAY.minusDays(5), DAY)).isOne();
+		assertThat(loads(Scope.TANK, OTHER_TANK_ID, DAY.minusDays(1), DAY.plusDays(1))).isOne();
+		assertThat(loads(Scope.ROOM, OTHER_ROOM_ID, DAY.minusDays(1), DAY.plusDays(1))).isOne();
+		assertThat(dailyAverageCache.getSize()).isEqualTo(6);
+
+		dailyAverageCache.onReadingsChanged(new ReadingsChangedEvent(TANK_ID, Set.of(DAY)));
+
+		assertThat(dailyAverageCache.getSize()).isEqualTo(3);
+		assertThat(loads(Scope.TANK, TANK_ID, DAY.minusDays(1), DAY.plusDays(1))).as("tank, covering the day").isOne();
+		assertThat(loads(Scope.ROOM, ROOM_ID, DAY, DAY)).as("room, covering the day").isOne();
+		assertThat(loadsByAttribute(Scope.DEPARTMENT, DEPARTMENT_ID, DAY.minusDays(5), DAY)).as("department, covering the day").isOne();
+		assertThat(loads(Scope.TANK, TANK_ID, DAY.plusDays(1), DAY.plusDays(5))).as("tank, after the day").isZero();
+		assertThat(loads(Scope.TANK, OTHER_TANK_ID, DAY.minusDays(1), DAY.plusDays(1))).as("other tank").isZero();
+		assertThat(loads(Scope.ROOM, OTHER_ROOM_ID, DAY.minusDays(1), DAY.plusDays(1))).as("other room").isZero();
+	}
+
+	@Test
+	void resultComputedAcrossAWriteIsNotKept() {
+		DailyAverageCache.Mark mark = dailyAverageCache.mark();
+		// The write commits after the loader's data was read, but before the result is stored
+		dailyAverageCache.onReadingsChanged(new ReadingsChangedEvent(TANK_ID, Set.of(DAY)));
+		dailyAverageCache.getDailyAverages(Scope.TANK, TANK_ID, ATTRIBUTE_ID, DAY, DAY, mark, this::load);
+		assertThat(dailyAverageCache.getSize()).isZero();
+
+		// The same happens when the write commits while the loader runs
+		dailyAverageCache.getDailyAverages(Scope.ROOM, ROOM_ID, ATTRIBUTE_ID, DAY.plusDays(1), DAY.plusDays(2), () -> {
+			dailyAverageCache.onReadingsChanged(new ReadingsChangedEvent(TANK_ID, Set.of(DAY)));
+			return load();
+		});
+		assertThat(dailyAverageCache.getSize()).isZero();
+
+		// Writes to other scopes do not matter
+		mark = dailyAverageCache.mark();
+		dailyAverageCache.onReadingsChanged(new ReadingsChangedEvent(OTHER_TANK_ID, Set.of(DAY)));
+		dailyAverageCache.getDailyAverages(Scope.ROOM, ROOM_ID, ATTRIBUTE_ID, DAY, DAY, mark, this::load);
+		assertThat(dailyAverageCache.getSize()).isOne();
+	}
+
+	private int loads(Scope scope, Long scopeId, LocalDate startDate, LocalDate endDate) {
+		int before = loads.get();
+		dailyAverageCache.getDailyAverages(scope, scopeId, ATTRIBUTE_ID, startDate, endDate, this::load);
+		return loads.get() - before;
+	}
+
+	private int loadsByAttribute(Scope scope, Long scopeId, LocalDate startDate, LocalDate endDate) {
+		int before = loads.get();
+		dailyAverageCache.getDailyAveragesByAttribute(scope, scopeId, startDate, endDate, () -> Map.of("Temperature", load()));
+		return loads.get() - before;
+	}
+
+	private Map<LocalDate, Double> load() {
+		loads.incrementAndGet();
+		return Map.of(DAY, 1.0);
+	}
+}
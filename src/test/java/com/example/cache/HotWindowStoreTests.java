@@ -0,0 +1,106 @@
+package com.example.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.analytics.DailyAggregator;
+import com.example.analytics.DailyAggregator.Statistic;
+import com.example.dto.TankReading;
+import com.example.event.ReadingsChangedEvent;
+import com.example.repository.AttributeValueRepository;
+
+/**
+ * Checks that readings written while the initial load runs end up in the store.
+ */
+class HotWindowStoreTests {
+
+	private static final Long TANK_ID = 1L;
+	private static final Long ATTRIBUTE_ID = 2L;
+
+	private final LocalDate today = LocalDate.now();
+
+	private HotWindowStore hotWindowStore;
+
+	@BeforeEach
+	void setUp() {
+		AttributeValueRepository attributeValueRepository = mock(AttributeValueRepository.class);
+		when(attributeValueRepository.streamReadingsBetween(any(), any())).thenAnswer(invocation -> Stream.empty());
+		// The reading only becomes visible to the reload, as if written after the load read its day
+		when(attributeValueRepository.streamReadingsInTankBetween(eq(TANK_ID), any(), any()))
+				.thenAnswer(invocation -> Stream.of(new TankReading(TANK_ID, ATTRIBUTE_ID, today.atTime(10, 0), 7)));
+
+		hotWindowStore = new HotWindowStore();
+		hotWindowStore.setTransactionManager(mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(hotWindowStore, "attributeValueRepository", attributeValueRepository);
+		ReflectionTestUtils.setField(hotWindowStore, "enabled", true);
+		ReflectionTestUtils.setField(hotWindowStore, "days", 2);
+		ReflectionTestUtils.setField(hotWindowStore, "maxReadings", 1000L);
+	}
+
+	@Test
+	void reloadsDaysWrittenDuringTheLoad() {
+		hotWindowStore.onReadingsChanged(new ReadingsChangedEvent(TANK_ID, Set.of(today)));
+		ReflectionTestUtils.invokeMethod(hotWindowStore, "load");
+
+		assertThat(dailyAverages()).containsEntry(today, 7.0);
+	}
+
+	@Test
+	void reloadsDaysQueuedWhileTheLoadFinishes() throws InterruptedException {
+		CountDownLatch listenerChecked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		// The listener saw the store still loading and stops right before queueing its day
+		HashSet<LocalDate> days = new HashSet<>(List.of(today)) {
+			@Override
+			public Iterator<LocalDate> iterator() {
+				listenerChecked.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.iterator();
+			}
+		};
+		Thread listener = new Thread(() -> hotWindowStore.onReadingsChanged(new ReadingsChangedEvent(TANK_ID, days)));
+		listener.start();
+		assertThat(listenerChecked.await(10, TimeUnit.SECONDS)).isTrue();
+
+		Thread loader = new Thread(() -> ReflectionTestUtils.invokeMethod(hotWindowStore, "load"));
+		loader.start();
+		// The load either finishes or waits for the listener to queue its day
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (loader.isAlive() && loader.getState() != Thread.State.BLOCKED && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		release.countDown();
+		listener.join(10_000);
+		loader.join(10_000);
+
+		assertThat(hotWindowStore.covers(today)).isTrue();
+		assertThat(dailyAverages()).containsEntry(today, 7.0);
+	}
+
+	private Map<LocalDate, Double> dailyAverages() {
+		DailyAggregator aggregator = hotWindowStore.aggregateDaily(List.of(TANK_ID), ATTRIBUTE_ID, today, today).get(ATTRIBUTE_ID);
+		return aggregator == null ? Map.of() : aggregator.toMap(Statistic.MEAN);
+	}
+}
@@ -0,0 +1,124 @@
+package com.example.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.dto.AttributeValueRequest;
+import com.example.entity.Attribute;
+import com.example.entity.Tank;
+import com.example.repository.AttributeRepository;
+import com.example.repository.TankRepository;
+import com.example.service.TankService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Checks that the series endpoints read each range at the coarsest resolution that still gives the points asked for.
+ * Runs on an in-memory H2 database in MySQL mode.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:series;MODE=MySQL;DATABASE_TO_LOWER=FALSE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;NON_KEYWORDS=VALUE,TIMESTAMP,DAY,HOUR,MONTH,WEEK",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.show-sql=false" })
+@AutoConfigureMockMvc
+class AttributeValueControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private TankService tankService;
+
+	@Autowired
+	private TankRepository tankRepository;
+
+	@Autowired
+	private AttributeRepository attributeRepository;
+
+	private Tank tank;
+	private Attribute attribute;
+
+	@BeforeEach
+	void createReadings() {
+		tank = new Tank();
+		tank.setName("Series");
+		tank = tankRepository.save(tank);
+		attribute = new Attribute();
+		attribute.setName("Temperature");
+		attribute = attributeRepository.save(attribute);
+
+		LocalDateTime firstDay = LocalDateTime.of(2023, 5, 1, 10, 0);
+		tankService.saveAttributeValuesToTankWithDate(tank.getId(), List.of(
+				request(firstDay, 2), request(firstDay.plusMinutes(30), 4), request(firstDay.plusHours(1), 6)), firstDay.toLocalDate());
+		tankService.saveAttributeValuesToTankWithDate(tank.getId(), List.of(request(firstDay.plusDays(1), 8)), firstDay.toLocalDate().plusDays(1));
+	}
+
+	@Test
+	void shortRangesAreReadHourly() throws Exception {
+		JsonNode series = series("2023-05-01T00:00:00", "2023-05-03T00:00:00", 10);
+
+		assertThat(series.get("resolution").asText()).isEqualTo("HOUR");
+		assertThat(dataPoints(series)).containsExactly(
+				Map.entry("2023-05-01T10:00:00", 3.0), Map.entry("2023-05-01T11:00:00", 6.0), Map.entry("2023-05-02T10:00:00", 8.0));
+	}
+
+	@Test
+	void longerRangesAreReadAtCoarserResolutions() throws Exception {
+		JsonNode series = series("2023-04-01T00:00:00", "2023-06-30T00:00:00", 50);
+		assertThat(series.get("resolution").asText()).isEqualTo("DAY");
+		assertThat(dataPoints(series)).containsExactly(Map.entry("2023-05-01T00:00:00", 4.0), Map.entry("2023-05-02T00:00:00", 8.0));
+
+		// Monday 2023-05-01 starts the week
+		series = series("2021-01-01T00:00:00", "2023-12-31T00:00:00", 50);
+		assertThat(series.get("resolution").asText()).isEqualTo("WEEK");
+		assertThat(dataPoints(series)).containsExactly(Map.entry("2023-05-01T00:00:00", 5.0));
+
+		series = series("2000-01-01T00:00:00", "2023-12-31T00:00:00", 50);
+		assertThat(series.get("resolution").asText()).isEqualTo("MONTH");
+		assertThat(dataPoints(series)).containsExactly(Map.entry("2023-05-01T00:00:00", 5.0));
+	}
+
+	private JsonNode series(String start, String end, int points) throws Exception {
+		String body = mockMvc.perform(get("/attribute-values/tank/{tankId}/attribute/{attributeId}/series", tank.getId(), attribute.getId())
+						.param("start", start)
+						.param("end", end)
+						.param("points", String.valueOf(points)))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return objectMapper.readTree(body);
+	}
+
+	private static Map<String, Double> dataPoints(JsonNode series) {
+		Map<String, Double> dataPoints = new LinkedHashMap<>();
+		for (JsonNode dataPoint : series.get("dataPoints")) {
+			dataPoints.put(dataPoint.get("timestamp").asText(), dataPoint.get("value").asDouble());
+		}
+		return dataPoints;
+	}
+
+	private AttributeValueRequest request(LocalDateTime timestamp, double value) {
+		AttributeValueRequest request = new AttributeValueRequest();
+		request.setAttributeId(attribute.getId());
+		request.setTimestamp(timestamp);
+		request.setValue(value);
+		return request;
+	}
+}
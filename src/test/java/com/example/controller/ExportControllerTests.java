@@ -0,0 +1,189 @@
+package com.example.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.example.cache.HierarchyStore;
+import com.example.dto.TankReading;
+import com.example.entity.Attribute;
+import com.example.entity.Department;
+import com.example.entity.Room;
+import com.example.entity.Tank;
+import com.example.event.HierarchyChangedEvent;
+import com.example.repository.AttributeRepository;
+import com.example.repository.AttributeValueBatchWriter;
+import com.example.repository.DepartmentRepository;
+import com.example.repository.RoomRepository;
+import com.example.repository.TankRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Checks that streamed exports read back to the stored readings, plain and gzipped.
+ * Runs on an in-memory H2 database in MySQL mode.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:exports;MODE=MySQL;DATABASE_TO_LOWER=FALSE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;NON_KEYWORDS=VALUE,TIMESTAMP,DAY,HOUR,MONTH,WEEK",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.show-sql=false" })
+@AutoConfigureMockMvc
+class ExportControllerTests {
+
+	private static final LocalDateTime START = LocalDateTime.of(2023, 5, 1, 0, 0);
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private DepartmentRepository departmentRepository;
+
+	@Autowired
+	private RoomRepository roomRepository;
+
+	@Autowired
+	private TankRepository tankRepository;
+
+	@Autowired
+	private AttributeRepository attributeRepository;
+
+	@Autowired
+	private AttributeValueBatchWriter attributeValueBatchWriter;
+
+	@Autowired
+	private HierarchyStore hierarchyStore;
+
+	private Department department;
+	private List<TankReading> readings;
+
+	@BeforeEach
+	void createReadings() {
+		department = new Department();
+		department.setName("Export");
+		department = departmentRepository.save(department);
+		Room room = new Room();
+		room.setName("Export");
+		room.setDepartment(department);
+		room = roomRepository.save(room);
+		Tank tank = new Tank();
+		tank.setName("Export");
+		tank.setRoom(room);
+		tank = tankRepository.save(tank);
+		Attribute attribute = new Attribute();
+		attribute.setName("Export");
+		attribute = attributeRepository.save(attribute);
+		hierarchyStore.onHierarchyChanged(new HierarchyChangedEvent());
+
+		readings = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			readings.add(new TankReading(tank.getId(), attribute.getId(), START.plusHours(i).plusSeconds(i), 20.5 + i * 0.25));
+		}
+		attributeValueBatchWriter.insert(readings);
+	}
+
+	@Test
+	void ndjsonReadsBack() throws Exception {
+		MockHttpServletResponse response = export(get("/attribute-values/export/department/{departmentId}", department.getId()));
+
+		assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+		assertThat(parseNdjson(response.getContentAsString())).containsExactlyInAnyOrderElementsOf(readings);
+	}
+
+	@Test
+	void csvReadsBack() throws Exception {
+		MockHttpServletResponse response = export(get("/attribute-values/export/department/{departmentId}", department.getId())
+				.param("format", "csv"));
+
+		String[] lines = response.getContentAsString().split("\n");
+		assertThat(lines[0]).isEqualTo("tankId,attributeId,timestamp,value");
+		List<TankReading> exported = new ArrayList<>();
+		for (int i = 1; i < lines.length; i++) {
+			String[] fields = lines[i].split(",");
+			exported.add(new TankReading(Long.valueOf(fields[0]), Long.valueOf(fields[1]), LocalDateTime.parse(fields[2]), Double.parseDouble(fields[3])));
+		}
+		assertThat(exported).containsExactlyInAnyOrderElementsOf(readings);
+	}
+
+	@Test
+	void gzipReadsBack() throws Exception {
+		MockHttpServletResponse response = export(get("/attribute-values/export/department/{departmentId}", department.getId())
+				.header(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip;q=0.8"));
+
+		assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+			assertThat(parseNdjson(new String(input.readAllBytes(), StandardCharsets.UTF_8))).containsExactlyInAnyOrderElementsOf(readings);
+		}
+	}
+
+	@Test
+	void gzipRefusedWithZeroQualityIsNotUsed() throws Exception {
+		MockHttpServletResponse response = export(get("/attribute-values/export/department/{departmentId}", department.getId())
+				.header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, *"));
+
+		assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+		assertThat(parseNdjson(response.getContentAsString())).hasSize(readings.size());
+	}
+
+	@Test
+	void acceptEncodingWeightsAreRead() {
+		assertThat(ExportController.acceptsGzip(null)).isFalse();
+		assertThat(ExportController.acceptsGzip("identity")).isFalse();
+		assertThat(ExportController.acceptsGzip("gzip")).isTrue();
+		assertThat(ExportController.acceptsGzip("br, GZIP ; q=0.5")).isTrue();
+		assertThat(ExportController.acceptsGzip("gzip;q=0")).isFalse();
+		assertThat(ExportController.acceptsGzip("gzip; q=0.000")).isFalse();
+		assertThat(ExportController.acceptsGzip("*")).isTrue();
+		assertThat(ExportController.acceptsGzip("*;q=0")).isFalse();
+		assertThat(ExportController.acceptsGzip("gzip;q=0, *;q=1")).isFalse();
+		assertThat(ExportController.acceptsGzip("gzip;q=1, *;q=0")).isTrue();
+	}
+
+	private MockHttpServletResponse export(MockHttpServletRequestBuilder exportRequest) throws Exception {
+		MvcResult started = mockMvc.perform(exportRequest
+						.param("start", START.toString())
+						.param("end", START.plusDays(1).toString()))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		MockHttpServletResponse response = mockMvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andReturn().getResponse();
+		assertThat(response.getHeaders(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT_ENCODING);
+		return response;
+	}
+
+	private List<TankReading> parseNdjson(String body) throws IOException {
+		List<TankReading> exported = new ArrayList<>();
+		for (String line : body.split("\n")) {
+			JsonNode reading = objectMapper.readTree(line);
+			exported.add(new TankReading(reading.get("tankId").asLong(), reading.get("attributeId").asLong(),
+					LocalDateTime.parse(reading.get("timestamp").asText()), reading.get("value").asDouble()));
+		}
+		return exported;
+	}
+}
@@ -0,0 +1,139 @@
+package com.example.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.dto.TankReading;
+import com.example.entity.Attribute;
+import com.example.entity.AttributeValue;
+import com.example.entity.Department;
+import com.example.entity.Room;
+import com.example.entity.Tank;
+
+/**
+ * Measures how many readings per second AttributeValueBatchWriter inserts, against saveAll on the repository.
+ * Writes to the configured database, so it only runs when asked for:
+ *
+ * <pre>
+ * mvn test -Dtest=AttributeValueBatchWriterThroughputTests -Dfishhatchery.benchmark=true
+ * </pre>
+ */
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@EnabledIfSystemProperty(named = "fishhatchery.benchmark", matches = "true")
+class AttributeValueBatchWriterThroughputTests {
+
+	private static final Logger logger = LoggerFactory.getLogger(AttributeValueBatchWriterThroughputTests.class);
+
+	private static final int READINGS = 100_000;
+
+	// As many readings as one POST /attribute-values/batch request
+	private static final int READINGS_PER_TRANSACTION = 5_000;
+
+	@Autowired
+	private AttributeValueBatchWriter attributeValueBatchWriter;
+
+	@Autowired
+	private AttributeValueRepository attributeValueRepository;
+
+	@Autowired
+	private DepartmentRepository departmentRepository;
+
+	@Autowired
+	private RoomRepository roomRepository;
+
+	@Autowired
+	private TankRepository tankRepository;
+
+	@Autowired
+	private AttributeRepository attributeRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Department department;
+	private Tank tank;
+	private Attribute attribute;
+
+	@BeforeEach
+	void createTank() {
+		department = new Department();
+		department.setName("Throughput");
+		department = departmentRepository.save(department);
+		Room room = new Room();
+		room.setName("Throughput");
+		room.setDepartment(department);
+		room = roomRepository.save(room);
+		tank = new Tank();
+		tank.setName("Throughput");
+		tank.setRoom(room);
+		tank = tankRepository.save(tank);
+		attribute = new Attribute();
+		attribute.setName("Throughput");
+		attribute = attributeRepository.save(attribute);
+	}
+
+	@AfterEach
+	void deleteTank() {
+		jdbcTemplate.update("DELETE FROM AttributeValue WHERE tank_id = ?", tank.getId());
+		departmentRepository.deleteById(department.getId());
+		attributeRepository.deleteById(attribute.getId());
+	}
+
+	@Test
+	void batchWriterOutrunsSaveAll() {
+		LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+		double saveAllRate = readingsPerSecond(start, readings -> {
+			List<AttributeValue> attributeValues = new ArrayList<>(readings.size());
+			for (TankReading reading : readings) {
+				AttributeValue attributeValue = new AttributeValue();
+				attributeValue.setTank(tank);
+				attributeValue.setAttribute(attribute);
+				attributeValue.setTimestamp(reading.timestamp());
+				attributeValue.setValue(reading.value());
+				attributeValues.add(attributeValue);
+			}
+			attributeValueRepository.saveAll(attributeValues);
+		});
+		double batchRate = readingsPerSecond(start.plusYears(1), attributeValueBatchWriter::insert);
+
+		logger.info("saveAll: {} readings/s, JDBC batches: {} readings/s", Math.round(saveAllRate), Math.round(batchRate));
+		assertThat(batchRate).isGreaterThan(saveAllRate);
+	}
+
+	private double readingsPerSecond(LocalDateTime start, Consumer<List<TankReading>> writer) {
+		// Warms up the statements and the connection before timing
+		write(start.minusDays(1), READINGS_PER_TRANSACTION, writer);
+		long startNanos = System.nanoTime();
+		write(start, READINGS, writer);
+		return READINGS / ((System.nanoTime() - startNanos) / 1e9);
+	}
+
+	private void write(LocalDateTime start, int count, Consumer<List<TankReading>> writer) {
+		for (int from = 0; from < count; from += READINGS_PER_TRANSACTION) {
+			List<TankReading> readings = new ArrayList<>(READINGS_PER_TRANSACTION);
+			for (int i = from; i < Math.min(from + READINGS_PER_TRANSACTION, count); i++) {
+				readings.add(new TankReading(tank.getId(), attribute.getId(), start.plusSeconds(i), i % 100));
+			}
+			transactionTemplate.executeWithoutResult(status -> writer.accept(readings));
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.dto.AttributeReading;
+import com.example.dto.CursorPage;
+import com.example.dto.PageCursor;
+import com.example.dto.TankReading;
+import com.example.entity.Attribute;
+import com.example.entity.Tank;
+import com.example.repository.AttributeRepository;
+import com.example.repository.AttributeValueBatchWriter;
+import com.example.repository.TankRepository;
+
+/**
+ * Checks that paging through a tank's readings with cursors returns every reading once, in a stable order,
+ * even when many share a timestamp.
+ * Runs on an in-memory H2 database in MySQL mode.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:readings;MODE=MySQL;DATABASE_TO_LOWER=FALSE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;NON_KEYWORDS=VALUE,TIMESTAMP,DAY,HOUR,MONTH,WEEK",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.show-sql=false" })
+class AttributeValueServiceTests {
+
+	private static final LocalDateTime START = LocalDateTime.of(2023, 5, 1, 0, 0);
+	private static final LocalDateTime END = START.plusDays(1);
+
+	@Autowired
+	private AttributeValueService attributeValueService;
+
+	@Autowired
+	private AttributeValueBatchWriter attributeValueBatchWriter;
+
+	@Autowired
+	private TankRepository tankRepository;
+
+	@Autowired
+	private AttributeRepository attributeRepository;
+
+	private Tank tank;
+	private Attribute temperature;
+	private Attribute oxygen;
+
+	@BeforeEach
+	void createTank() {
+		tank = new Tank();
+		tank.setName("Pages");
+		tank = tankRepository.save(tank);
+		temperature = new Attribute();
+		temperature.setName("Temperature");
+		temperature = attributeRepository.save(temperature);
+		oxygen = new Attribute();
+		oxygen.setName("Oxygen");
+		oxygen = attributeRepository.save(oxygen);
+	}
+
+	@Test
+	void cursorRoundTrips() {
+		PageCursor cursor = new PageCursor(3L, LocalDateTime.of(2023, 5, 1, 10, 15, 30, 123_456_000), 42L);
+		assertThat(PageCursor.decode(cursor.encode())).isEqualTo(cursor);
+		assertThat(PageCursor.decode(PageCursor.after(42L).encode())).isEqualTo(PageCursor.after(42L));
+		// URL-safe, so clients can pass it back as a query parameter unescaped
+		assertThat(cursor.encode()).matches("[A-Za-z0-9_-]+");
+
+		assertThatIllegalArgumentException().isThrownBy(() -> PageCursor.decode("not a cursor"));
+		assertThatIllegalArgumentException().isThrownBy(() -> PageCursor.decode(Base64.getUrlEncoder().encodeToString("1|x|2".getBytes())));
+	}
+
+	@Test
+	void readingsWithEqualTimestampsAreEachReturnedOnce() {
+		// Seven readings share a timestamp, told apart by their values
+		List<TankReading> readings = new ArrayList<>();
+		for (int i = 0; i < 7; i++) {
+			readings.add(new TankReading(tank.getId(), temperature.getId(), START.plusHours(1), i));
+		}
+		readings.add(new TankReading(tank.getId(), temperature.getId(), START.plusHours(2), 7));
+		readings.add(new TankReading(tank.getId(), temperature.getId(), START, 8));
+		attributeValueBatchWriter.insert(readings);
+
+		List<AttributeReading> paged = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			CursorPage<AttributeReading> page = attributeValueService.getReadingsPage(tank.getId(), temperature.getId(), START, END, cursor, 2);
+			assertThat(page.items()).hasSizeLessThanOrEqualTo(2);
+			paged.addAll(page.items());
+			cursor = page.nextCursor();
+			pages++;
+		} while (cursor != null);
+
+		assertThat(pages).isEqualTo(5);
+		assertThat(paged).extracting(AttributeReading::value).containsExactly(8.0, 0.0, 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0);
+	}
+
+	@Test
+	void pagesFollowAttributeThenTimestampOrder() {
+		List<TankReading> readings = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			readings.add(new TankReading(tank.getId(), oxygen.getId(), START.plusHours(1), 10 + i));
+			readings.add(new TankReading(tank.getId(), temperature.getId(), START.plusHours(1), 20 + i));
+		}
+		attributeValueBatchWriter.insert(readings);
+
+		CursorPage<AttributeReading> first = attributeValueService.getByTankAndDateRange(tank.getId(), START, END, null, 3);
+		CursorPage<AttributeReading> last = attributeValueService.getByTankAndDateRange(tank.getId(), START, END, first.nextCursor(), 3);
+
+		// Temperature was created first, so it has the lower ID and comes first
+		assertThat(first.items()).extracting(AttributeReading::value).containsExactly(20.0, 21.0, 22.0);
+		assertThat(first.nextCursor()).isNotNull();
+		// Exactly full, yet known to be the last page since nothing was found beyond it
+		assertThat(last.items()).extracting(AttributeReading::value).containsExactly(10.0, 11.0, 12.0);
+		assertThat(last.nextCursor()).isNull();
+	}
+
+	@Test
+	void shortRangeFitsOnOnePage() {
+		attributeValueBatchWriter.insert(List.of(new TankReading(tank.getId(), temperature.getId(), START.plusMinutes(5), 1)));
+
+		CursorPage<AttributeReading> page = attributeValueService.getReadingsPage(tank.getId(), temperature.getId(), START, END, null, 10);
+
+		assertThat(page.items()).hasSize(1);
+		assertThat(page.nextCursor()).isNull();
+	}
+}
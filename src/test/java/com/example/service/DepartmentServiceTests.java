@@ -0,0 +1,215 @@
+package com.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.example.cache.HierarchySnapshot;
+import com.example.cache.HierarchyStore;
+import com.example.entity.Department;
+import com.example.entity.Room;
+import com.example.entity.Tank;
+import com.example.repository.HierarchyBatchWriter;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Checks that saving the hierarchy costs the same number of statements whatever its size.
+ * Runs on an in-memory H2 database in MySQL mode.
+ */
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:departments;MODE=MySQL;DATABASE_TO_LOWER=FALSE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;NON_KEYWORDS=VALUE,TIMESTAMP,DAY,HOUR,MONTH,WEEK",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.show-sql=false",
+		"spring.jpa.properties.hibernate.generate_statistics=true" })
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Import({ DepartmentService.class, HierarchyBatchWriter.class, DepartmentServiceTests.StatementCounting.class })
+class DepartmentServiceTests {
+
+	@Autowired
+	private DepartmentService departmentService;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private CountingDataSource dataSource;
+
+	@MockBean
+	private HierarchyStore hierarchyStore;
+
+	@MockBean
+	private PurgeService purgeService;
+
+	@MockBean
+	private PageLimits pageLimits;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		// The saved nodes are read back from the snapshot, which is not what is measured here
+		when(hierarchyStore.get()).thenReturn(mock(HierarchySnapshot.class));
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Test
+	void reconcileRunsTheSameStatementsForAnySize() {
+		// Both stay within one JDBC batch and one IN list per kind of change
+		long[] small = statementsToReconcile(3);
+		long[] large = statementsToReconcile(9);
+
+		assertThat(large[0]).as("JPA statements").isEqualTo(small[0]);
+		assertThat(large[1]).as("JDBC statements").isEqualTo(small[1]);
+	}
+
+	/**
+	 * Saves a hierarchy of the given size, then reconciles it with a payload that renames and moves every node
+	 * and leaves out the last department, the last room of every department and the last tank of every room.
+	 *
+	 * @return The statements Hibernate prepared and the statements sent over the connection as a whole.
+	 */
+	private long[] statementsToReconcile(int size) {
+		List<Department> departments = new ArrayList<>();
+		List<Room> rooms = new ArrayList<>();
+		List<Tank> tanks = new ArrayList<>();
+		for (int d = 0; d < size; d++) {
+			Department department = new Department();
+			department.setName("Department " + d);
+			departments.add(entityManager.persist(department));
+			for (int r = 0; r < size; r++) {
+				Room room = new Room();
+				room.setName("Room " + d + "." + r);
+				room.setDepartment(department);
+				rooms.add(entityManager.persist(room));
+				for (int t = 0; t < size; t++) {
+					Tank tank = new Tank();
+					tank.setName("Tank " + d + "." + r + "." + t);
+					tank.setRoom(room);
+					tanks.add(entityManager.persist(tank));
+				}
+			}
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		// Every room moves to the next department and every tank to the next room
+		List<Department> payload = new ArrayList<>();
+		for (int d = 0; d < size - 1; d++) {
+			Department department = new Department();
+			department.setId(departments.get(d).getId());
+			department.setName(departments.get(d).getName() + " renamed");
+			payload.add(department);
+			for (int r = 0; r < size - 1; r++) {
+				int roomIndex = ((d + 1) % size) * size + r;
+				Room room = new Room();
+				room.setId(rooms.get(roomIndex).getId());
+				room.setName(rooms.get(roomIndex).getName() + " renamed");
+				department.getRooms().add(room);
+				for (int t = 0; t < size - 1; t++) {
+					int tankIndex = ((roomIndex + 1) % rooms.size()) * size + t;
+					Tank tank = new Tank();
+					tank.setId(tanks.get(tankIndex).getId());
+					tank.setName(tanks.get(tankIndex).getName() + " renamed");
+					room.getTanks().add(tank);
+				}
+			}
+		}
+
+		statistics.clear();
+		dataSource.statements.set(0);
+		departmentService.createOrUpdateDepartments(payload);
+		long jpaStatements = statistics.getPrepareStatementCount();
+		long jdbcStatements = dataSource.statements.get();
+
+		entityManager.clear();
+		assertThat(entityManager.find(Department.class, departments.get(size - 1).getId())).isNull();
+		assertThat(entityManager.find(Room.class, rooms.get(rooms.size() - 1).getId())).isNull();
+		Tank movedTank = entityManager.find(Tank.class, tanks.get((size + 1) * size).getId());
+		assertThat(movedTank.getName()).endsWith(" renamed");
+		assertThat(movedTank.getRoom().getId()).isEqualTo(rooms.get(size).getId());
+		assertThat(movedTank.getRoom().getDepartment().getId()).isEqualTo(departments.get(0).getId());
+		return new long[] { jpaStatements, jdbcStatements };
+	}
+
+	@TestConfiguration
+	static class StatementCounting {
+
+		// Counts the JdbcTemplate statements of HierarchyBatchWriter as well, which Hibernate does not see
+		@Bean
+		static BeanPostProcessor countingDataSource() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					return bean instanceof DataSource dataSource && !(bean instanceof CountingDataSource)
+							? new CountingDataSource(dataSource)
+							: bean;
+				}
+			};
+		}
+	}
+
+	static class CountingDataSource extends DelegatingDataSource {
+
+		private final AtomicLong statements = new AtomicLong();
+
+		CountingDataSource(DataSource target) {
+			super(target);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			return counting(super.getConnection());
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			return counting(super.getConnection(username, password));
+		}
+
+		private Connection counting(Connection connection) {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+					(proxy, method, args) -> {
+						if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")
+								|| method.getName().equals("prepareCall")) {
+							statements.incrementAndGet();
+						}
+						try {
+							return method.invoke(connection, args);
+						} catch (java.lang.reflect.InvocationTargetException e) {
+							throw e.getCause();
+						}
+					});
+		}
+	}
+}
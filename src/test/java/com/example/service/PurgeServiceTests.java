@@ -0,0 +1,161 @@
+package com.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.cache.HierarchySnapshot;
+import com.example.cache.HierarchyStore;
+import com.example.cache.HotWindowStore;
+import com.example.entity.TankPurge;
+import com.example.repository.HierarchyBatchWriter;
+import com.example.repository.TankPurgeRepository;
+
+/**
+ * Checks that purges of deleted tanks advance one chunk at a time, record their progress, pick up where they
+ * stopped on the next run and finish on the first short chunk.
+ * Runs on an in-memory H2 database in MySQL mode, committing every chunk as in production.
+ */
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:purges;MODE=MySQL;DATABASE_TO_LOWER=FALSE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;NON_KEYWORDS=VALUE,TIMESTAMP,DAY,HOUR,MONTH,WEEK",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.show-sql=false",
+		"fishhatchery.purge.chunk-size=5",
+		"fishhatchery.purge.chunks-per-run=2" })
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ PurgeService.class, HierarchyBatchWriter.class })
+class PurgeServiceTests {
+
+	private static final Long DELETED_TANK_ID = 7L;
+	private static final Long KEPT_TANK_ID = 8L;
+
+	@Autowired
+	private PurgeService purgeService;
+
+	@Autowired
+	private TankPurgeRepository tankPurgeRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@MockBean
+	private HierarchyStore hierarchyStore;
+
+	@MockBean
+	private HotWindowStore hotWindowStore;
+
+	@BeforeEach
+	void setUp() {
+		when(hierarchyStore.get()).thenReturn(mock(HierarchySnapshot.class));
+	}
+
+	@AfterEach
+	void cleanUp() {
+		jdbcTemplate.update("DELETE FROM AttributeValue");
+		jdbcTemplate.update("DELETE FROM AttributeRollup");
+		tankPurgeRepository.deleteAll();
+	}
+
+	@Test
+	void purgeAdvancesByChunksAndResumesOnTheNextRun() {
+		// 12 readings and 4 rollups: two chunks of readings, then one mixed chunk and a short one
+		insertReadings(DELETED_TANK_ID, 12);
+		insertRollups(DELETED_TANK_ID, 4);
+		insertReadings(KEPT_TANK_ID, 3);
+		insertRollups(KEPT_TANK_ID, 2);
+		Long purgeId = purgeService.schedule(List.of(DELETED_TANK_ID)).get(0).getId();
+
+		purgeService.purgeUnfinished();
+
+		TankPurge purge = tankPurgeRepository.findById(purgeId).orElseThrow();
+		assertThat(purge.getReadingsDeleted()).isEqualTo(10);
+		assertThat(purge.getRollupsDeleted()).isZero();
+		assertThat(purge.getFinishedAt()).isNull();
+		assertThat(count("AttributeValue", DELETED_TANK_ID)).isEqualTo(2);
+		verify(hotWindowStore, never()).forgetTank(anyLong());
+
+		purgeService.purgeUnfinished();
+
+		purge = tankPurgeRepository.findById(purgeId).orElseThrow();
+		assertThat(purge.getReadingsDeleted()).isEqualTo(12);
+		assertThat(purge.getRollupsDeleted()).isEqualTo(4);
+		assertThat(purge.getFinishedAt()).isNotNull();
+		assertThat(count("AttributeValue", DELETED_TANK_ID)).isZero();
+		assertThat(count("AttributeRollup", DELETED_TANK_ID)).isZero();
+		verify(hotWindowStore).forgetTank(DELETED_TANK_ID);
+		assertThat(tankPurgeRepository.findUnfinished()).isEmpty();
+
+		// Other tanks keep everything
+		assertThat(count("AttributeValue", KEPT_TANK_ID)).isEqualTo(3);
+		assertThat(count("AttributeRollup", KEPT_TANK_ID)).isEqualTo(2);
+	}
+
+	@Test
+	void purgeFinishesOnAnEmptyChunkAfterAFullOne() {
+		insertReadings(DELETED_TANK_ID, 5);
+		Long purgeId = purgeService.schedule(List.of(DELETED_TANK_ID)).get(0).getId();
+
+		purgeService.purgeUnfinished();
+
+		TankPurge purge = tankPurgeRepository.findById(purgeId).orElseThrow();
+		assertThat(purge.getReadingsDeleted()).isEqualTo(5);
+		assertThat(purge.getFinishedAt()).isNotNull();
+		verify(hotWindowStore).forgetTank(DELETED_TANK_ID);
+	}
+
+	@Test
+	void runsShareTheirChunksAcrossPurges() {
+		insertReadings(DELETED_TANK_ID, 3);
+		insertReadings(KEPT_TANK_ID, 12);
+		List<TankPurge> purges = purgeService.schedule(List.of(DELETED_TANK_ID, KEPT_TANK_ID));
+
+		purgeService.purgeUnfinished();
+
+		// The first purge finishes in its only chunk, the second gets the one chunk left
+		assertThat(tankPurgeRepository.findById(purges.get(0).getId()).orElseThrow().getFinishedAt()).isNotNull();
+		TankPurge second = tankPurgeRepository.findById(purges.get(1).getId()).orElseThrow();
+		assertThat(second.getReadingsDeleted()).isEqualTo(5);
+		assertThat(second.getFinishedAt()).isNull();
+		assertThat(tankPurgeRepository.findUnfinished()).extracting(TankPurge::getId).containsExactly(second.getId());
+	}
+
+	private void insertReadings(Long tankId, int count) {
+		for (int i = 0; i < count; i++) {
+			jdbcTemplate.update("INSERT INTO AttributeValue (tank_id, attribute_id, timestamp, value) VALUES (?, 1, ?, ?)",
+					tankId, LocalDateTime.of(2023, 1, 1, 0, 0).plusMinutes(i), i);
+		}
+	}
+
+	private void insertRollups(Long tankId, int count) {
+		for (int i = 0; i < count; i++) {
+			jdbcTemplate.update("INSERT INTO AttributeRollup (tank_id, attribute_id, resolution, bucketStart, valueSum, valueCount, valueMin, valueMax) "
+					+ "VALUES (?, 1, 'HOUR', ?, 1, 1, 1, 1)", tankId, LocalDateTime.of(2023, 1, 1, i, 0));
+		}
+	}
+
+	private long count(String table, Long tankId) {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE tank_id = ?", Long.class, tankId);
+	}
+}
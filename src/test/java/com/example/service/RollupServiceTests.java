@@ -0,0 +1,166 @@
+package com.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.dto.AttributeValueRequest;
+import com.example.entity.Attribute;
+import com.example.entity.AttributeRollup;
+import com.example.entity.RollupResolution;
+import com.example.entity.Tank;
+import com.example.repository.AttributeRepository;
+import com.example.repository.AttributeRollupRepository;
+import com.example.repository.TankRepository;
+
+/**
+ * Checks that the hourly, daily, weekly and monthly rollups always equal what the readings add up to.
+ * Runs on an in-memory H2 database in MySQL mode.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:rollups;MODE=MySQL;DATABASE_TO_LOWER=FALSE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;NON_KEYWORDS=VALUE,TIMESTAMP,DAY,HOUR,MONTH,WEEK",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.show-sql=false" })
+class RollupServiceTests {
+
+	// Wednesday to Saturday, across the end of a month; 2023-05-29 starts the week
+	private static final List<LocalDate> DAYS = LocalDate.of(2023, 5, 31).datesUntil(LocalDate.of(2023, 6, 4)).toList();
+
+	@Autowired
+	private RollupService rollupService;
+
+	@Autowired
+	private TankService tankService;
+
+	@Autowired
+	private TankRepository tankRepository;
+
+	@Autowired
+	private AttributeRepository attributeRepository;
+
+	@Autowired
+	private AttributeRollupRepository attributeRollupRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Tank tank;
+	private Attribute temperature;
+	private Attribute oxygen;
+
+	@BeforeEach
+	void createTank() {
+		tank = new Tank();
+		tank.setName("Rollups");
+		tank = tankRepository.save(tank);
+		temperature = new Attribute();
+		temperature.setName("Temperature");
+		temperature = attributeRepository.save(temperature);
+		oxygen = new Attribute();
+		oxygen.setName("Oxygen");
+		oxygen = attributeRepository.save(oxygen);
+	}
+
+	@Test
+	void rollupsFollowInsertsUpdatesAndDeletes() {
+		for (int d = 0; d < DAYS.size(); d++) {
+			save(DAYS.get(d),
+					request(temperature, DAYS.get(d).atTime(1, 0), 10 + d),
+					request(temperature, DAYS.get(d).atTime(1, 30), 12.5),
+					request(temperature, DAYS.get(d).atTime(2, 15), 8.25),
+					request(oxygen, DAYS.get(d).atTime(1, 0), 7));
+		}
+		assertRollupsMatchReadings();
+
+		// One value changes, in the last week of May
+		save(DAYS.get(0),
+				request(temperature, DAYS.get(0).atTime(1, 0), 30),
+				request(temperature, DAYS.get(0).atTime(1, 30), 12.5),
+				request(temperature, DAYS.get(0).atTime(2, 15), 8.25),
+				request(oxygen, DAYS.get(0).atTime(1, 0), 7));
+		assertRollupsMatchReadings();
+
+		// An hour goes, and a whole attribute on one day, and everything on the last day
+		save(DAYS.get(1),
+				request(temperature, DAYS.get(1).atTime(1, 0), 11),
+				request(temperature, DAYS.get(1).atTime(1, 30), 12.5));
+		save(DAYS.get(2), request(oxygen, DAYS.get(2).atTime(1, 0), 7));
+		save(DAYS.get(3));
+		assertRollupsMatchReadings();
+	}
+
+	@Test
+	void rebuildRestoresTheRollups() {
+		for (LocalDate day : DAYS) {
+			save(day, request(temperature, day.atTime(5, 0), 4), request(oxygen, day.atTime(23, 45), 6.5));
+		}
+		jdbcTemplate.update("UPDATE AttributeRollup SET valueSum = valueSum + 1 WHERE tank_id = ?", tank.getId());
+		jdbcTemplate.update("DELETE FROM AttributeRollup WHERE tank_id = ? AND resolution = 'WEEK'", tank.getId());
+
+		rollupService.rebuildRollups();
+
+		assertRollupsMatchReadings();
+	}
+
+	private void save(LocalDate day, AttributeValueRequest... requests) {
+		tankService.saveAttributeValuesToTankWithDate(tank.getId(), List.of(requests), day);
+	}
+
+	/**
+	 * Aggregates the tank's readings at every resolution and compares the result with its rollups.
+	 */
+	private void assertRollupsMatchReadings() {
+		Map<BucketKey, Bucket> expected = new HashMap<>();
+		jdbcTemplate.query("SELECT attribute_id, timestamp, value FROM AttributeValue WHERE tank_id = ?", row -> {
+			long attributeId = row.getLong(1);
+			LocalDateTime timestamp = row.getObject(2, LocalDateTime.class);
+			double value = row.getDouble(3);
+			for (RollupResolution resolution : RollupResolution.values()) {
+				expected.merge(new BucketKey(attributeId, resolution, resolution.truncate(timestamp)), new Bucket(value, 1, value, value), Bucket::plus);
+			}
+		}, tank.getId());
+
+		Map<BucketKey, Bucket> actual = new HashMap<>();
+		List<AttributeRollup> rollups = new ArrayList<>(attributeRollupRepository.findAll());
+		for (AttributeRollup rollup : rollups) {
+			if (rollup.getTankId().equals(tank.getId())) {
+				actual.put(new BucketKey(rollup.getAttributeId(), rollup.getResolution(), rollup.getBucketStart()),
+						new Bucket(rollup.getValueSum(), rollup.getValueCount(), rollup.getValueMin(), rollup.getValueMax()));
+			}
+		}
+
+		assertThat(actual).isEqualTo(expected);
+	}
+
+	private static AttributeValueRequest request(Attribute attribute, LocalDateTime timestamp, double value) {
+		AttributeValueRequest request = new AttributeValueRequest();
+		request.setAttributeId(attribute.getId());
+		request.setTimestamp(timestamp);
+		request.setValue(value);
+		return request;
+	}
+
+	private record BucketKey(long attributeId, RollupResolution resolution, LocalDateTime bucketStart) {
+	}
+
+	// The values are exact in binary, so sums compare equal whatever the order they were added in
+	private record Bucket(double sum, long count, double min, double max) {
+
+		Bucket plus(Bucket other) {
+			return new Bucket(sum + other.sum, count + other.count, Math.min(min, other.min), Math.max(max, other.max));
+		}
+	}
+}
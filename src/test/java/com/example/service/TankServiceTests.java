@@ -0,0 +1,177 @@
+package com.example.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import com.example.cache.AttributeCatalogue;
+import com.example.cache.HierarchyStore;
+import com.example.dto.AttributeValueRequest;
+import com.example.dto.StoredReading;
+import com.example.dto.TankReading;
+import com.example.entity.Tank;
+import com.example.repository.AttributeValueBatchWriter;
+import com.example.repository.AttributeValueRepository;
+import com.example.repository.HierarchyBatchWriter;
+
+/**
+ * Checks that saving a tank's values for a day only inserts, updates and deletes what differs from what is stored.
+ * Runs on an in-memory H2 database in MySQL mode.
+ */
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:tanks;MODE=MySQL;DATABASE_TO_LOWER=FALSE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;NON_KEYWORDS=VALUE,TIMESTAMP,DAY,HOUR,MONTH,WEEK",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.jpa.show-sql=false" })
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Import({ TankService.class, AttributeValueBatchWriter.class })
+class TankServiceTests {
+
+	private static final Long TEMPERATURE = 1L;
+	private static final Long OXYGEN = 2L;
+
+	private static final LocalDate DAY = LocalDate.of(2023, 6, 15);
+
+	@Autowired
+	private TankService tankService;
+
+	@Autowired
+	private AttributeValueBatchWriter attributeValueBatchWriter;
+
+	@Autowired
+	private AttributeValueRepository attributeValueRepository;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@MockBean
+	private AttributeCatalogue attributeCatalogue;
+
+	@MockBean
+	private RollupService rollupService;
+
+	@MockBean
+	private HierarchyBatchWriter hierarchyBatchWriter;
+
+	@MockBean
+	private PurgeService purgeService;
+
+	@MockBean
+	private HierarchyStore hierarchyStore;
+
+	@MockBean
+	private PageLimits pageLimits;
+
+	private Tank tank;
+
+	@BeforeEach
+	void createTank() {
+		tank = new Tank();
+		tank.setName("Tank");
+		tank = entityManager.persistAndFlush(tank);
+	}
+
+	@Test
+	void insertsNewValues() {
+		tankService.saveAttributeValuesToTankWithDate(tank.getId(), List.of(
+				request(TEMPERATURE, DAY.atTime(10, 0), 20),
+				request(OXYGEN, DAY.atTime(10, 0), 8)), DAY);
+
+		assertThat(storedOn(DAY)).extracting(StoredReading::attributeId, StoredReading::value)
+				.containsExactlyInAnyOrder(tuple(TEMPERATURE, 20.0), tuple(OXYGEN, 8.0));
+		verify(rollupService).refreshRollups(tank.getId(), Set.of(DAY));
+	}
+
+	@Test
+	void updatesChangedValuesInPlace() {
+		store(TEMPERATURE, DAY.atTime(10, 0), 20);
+		StoredReading before = storedOn(DAY).get(0);
+
+		tankService.saveAttributeValuesToTankWithDate(tank.getId(), List.of(request(TEMPERATURE, DAY.atTime(10, 0), 21)), DAY);
+
+		assertThat(storedOn(DAY)).containsExactly(new StoredReading(before.id(), TEMPERATURE, DAY.atTime(10, 0), 21));
+		verify(rollupService).refreshRollups(tank.getId(), Set.of(DAY));
+	}
+
+	@Test
+	void deletesValuesLeftOut() {
+		store(TEMPERATURE, DAY.atTime(10, 0), 20);
+		store(TEMPERATURE, DAY.atTime(11, 0), 22);
+		store(TEMPERATURE, DAY.minusDays(1).atTime(11, 0), 19);
+
+		tankService.saveAttributeValuesToTankWithDate(tank.getId(), List.of(request(TEMPERATURE, DAY.atTime(11, 0), 22)), DAY);
+
+		assertThat(storedOn(DAY)).extracting(StoredReading::timestamp).containsExactly(DAY.atTime(11, 0));
+		// Other days are left alone
+		assertThat(storedOn(DAY.minusDays(1))).hasSize(1);
+	}
+
+	@Test
+	void leavesUnchangedValuesAlone() {
+		// Stored with microsecond precision; the submission repeats it with nanoseconds
+		LocalDateTime timestamp = DAY.atTime(10, 0, 0, 123_456_000);
+		store(TEMPERATURE, timestamp, 20);
+		List<StoredReading> before = storedOn(DAY);
+
+		tankService.saveAttributeValuesToTankWithDate(tank.getId(), List.of(request(TEMPERATURE, timestamp.plusNanos(789), 20)), DAY);
+
+		assertThat(storedOn(DAY)).isEqualTo(before);
+		verify(rollupService, never()).refreshRollups(anyLong(), any());
+	}
+
+	@Test
+	void collapsesDuplicatesWithinTheDayOnly() {
+		// Two stored copies of the same reading
+		store(TEMPERATURE, DAY.atTime(10, 0), 20);
+		store(TEMPERATURE, DAY.atTime(10, 0), 20);
+		LocalDateTime nextDay = DAY.plusDays(1).atTime(10, 0);
+
+		tankService.saveAttributeValuesToTankWithDate(tank.getId(), List.of(
+				request(TEMPERATURE, DAY.atTime(10, 0), 20),
+				request(TEMPERATURE, DAY.atTime(10, 0), 23),
+				request(TEMPERATURE, nextDay, 5),
+				request(TEMPERATURE, nextDay, 6)), DAY);
+
+		// Within the day the last value wins, outside it every value is added as it is
+		assertThat(storedOn(DAY)).extracting(StoredReading::value).containsExactly(23.0);
+		assertThat(storedOn(DAY.plusDays(1))).extracting(StoredReading::value).containsExactlyInAnyOrder(5.0, 6.0);
+		verify(rollupService).refreshRollups(eq(tank.getId()), eq(Set.of(DAY, DAY.plusDays(1))));
+	}
+
+	private void store(Long attributeId, LocalDateTime timestamp, double value) {
+		attributeValueBatchWriter.insert(List.of(new TankReading(tank.getId(), attributeId, timestamp, value)));
+	}
+
+	private List<StoredReading> storedOn(LocalDate day) {
+		return new ArrayList<>(attributeValueRepository.findStoredReadingsInTankBetween(tank.getId(), day.atStartOfDay(), day.plusDays(1).atStartOfDay()));
+	}
+
+	private static AttributeValueRequest request(Long attributeId, LocalDateTime timestamp, double value) {
+		AttributeValueRequest request = new AttributeValueRequest();
+		request.setAttributeId(attributeId);
+		request.setTimestamp(timestamp);
+		request.setValue(value);
+		return request;
+	}
+}